@@ -12,6 +12,8 @@ repositories {
 dependencies {
     testImplementation(platform("org.junit:junit-bom:5.9.1"))
     testImplementation("org.junit.jupiter:junit-jupiter")
+    // Gradle 8 still puts its own launcher on the test classpath, Gradle 9 only uses a declared one
+    testRuntimeOnly("org.junit.platform:junit-platform-launcher")
 }
 
 tasks.test {
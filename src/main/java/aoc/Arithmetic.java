@@ -0,0 +1,80 @@
+package aoc;
+
+/**
+ * Integer helpers for puzzles that reason with divisibility and remainders.
+ */
+public final class Arithmetic {
+
+   // 10^18 is the largest power of ten that fits in a long
+   public static final int MAX_POWER_OF_TEN = 18;
+   private static final long[] POWERS_OF_TEN = new long[MAX_POWER_OF_TEN + 1];
+
+   static {
+      POWERS_OF_TEN[0] = 1;
+      for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+         POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+      }
+   }
+
+   private Arithmetic() {
+   }
+
+   public static long powerOfTen(int exponent) {
+      return POWERS_OF_TEN[exponent];
+   }
+
+   // Decimal digits of a non-negative number, 0 having one digit
+   public static int digitCount(long number) {
+      int digits = 1;
+      while (digits < POWERS_OF_TEN.length && number >= POWERS_OF_TEN[digits]) {
+         digits++;
+      }
+      return digits;
+   }
+
+   public static long gcd(long a, long b) {
+      while (b != 0) {
+         long t = a % b;
+         a = b;
+         b = t;
+      }
+      return a;
+   }
+
+   /**
+    * Returns the x in [0, modulus) with {@code value * x = 1 (mod modulus)}, value and modulus being coprime.
+    */
+   public static long modInverse(long value, long modulus) {
+      // Extended Euclid, only the coefficient of value is tracked
+      long oldR = value, r = modulus;
+      long oldS = 1, s = 0;
+      while (r != 0) {
+         long quotient = oldR / r;
+         long t = oldR - quotient * r;
+         oldR = r;
+         r = t;
+         t = oldS - quotient * s;
+         oldS = s;
+         s = t;
+      }
+      return Math.floorMod(oldS, modulus);
+   }
+
+   /**
+    * Solves {@code t = a (mod m)} and {@code t = b (mod n)} with the Chinese Remainder Theorem.
+    *
+    * @return the t in [0, lcm(m, n)), or -1 when the two remainders contradict each other
+    * @throws ArithmeticException when an intermediate product no longer fits in a long
+    */
+   public static long chineseRemainder(long a, long m, long b, long n) {
+      long g = gcd(m, n);
+      if (Math.floorMod(b - a, g) != 0) {
+         return -1;
+      }
+      // m * k = b - a (mod n), so k = (b - a) / g * inverse(m / g) (mod n / g)
+      long reducedModulus = n / g;
+      long k = Math.floorMod(Math.multiplyExact(Math.floorMod((b - a) / g, reducedModulus),
+            modInverse(Math.floorMod(m / g, reducedModulus), reducedModulus)), reducedModulus);
+      return Math.floorMod(a + Math.multiplyExact(m, k), m / g * n);
+   }
+}
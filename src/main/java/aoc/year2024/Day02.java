@@ -1,16 +1,16 @@
 package aoc.year2024;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Objects;
 import java.util.stream.IntStream;
-import java.util.stream.Stream;
 
 
 public class Day02 {
+   // Inputs with at least this many lines are validated in parallel line ranges
+   private static final int PARALLEL_THRESHOLD = 100_000;
+   private static final int LINES_PER_TASK = 16_384;
+
    private final List<String> input;
-   private final List<Boolean> checklist = new ArrayList<>();
-   private final List<Boolean> checkListModified = new ArrayList<>();
 
    public Day02(List<String> input) {
       this.input = input;
@@ -22,81 +22,155 @@ public class Day02 {
       {
          throw new IllegalArgumentException("Input list cannot be null or empty");
       }
-      processInput(input, checklist, checkListModified);
-
-      System.out.println("Number of safe lines are: " + checklist.stream().filter(Boolean::booleanValue).count());
-      System.out.println("Number of safe lines after rules modification are: " + checkListModified.stream().filter(Boolean::booleanValue).count());
-   }
+      ReportCounter counter = input.size() >= PARALLEL_THRESHOLD
+            ? processInputInParallel(input)
+            : processInput(input, 0, input.size());
 
-   private static void processInput(List<String> input, List<Boolean> checklist, List<Boolean> checkListModified) {
-      input.stream()
-            .map(String::trim) // Trim each line
-            .filter(line -> !line.isEmpty()) // Filter out empty or whitespace-only lines
-            .map(line -> {
-               try {
-                  // Parse numbers in the line
-                  return Stream.of(line.split("\\s+"))
-                        .map(Integer::parseInt)
-                        .toList();
-               } catch (NumberFormatException e) {
-                  System.out.println("Invalid numbers in line: '" + line + "'. Skipping...");
-                  return null; // Return null for invalid lines
-               }
-            })
-            .filter(Objects::nonNull) // Exclude null results
-            .forEach(lineNumbers ->
-            {
-               checklist.add(isASafeLine(lineNumbers));
-               checkListModified.add(isASafeLineWithOneLevelRemoval(lineNumbers));
-            });
+      System.out.println("Number of safe lines are: " + counter.safe);
+      System.out.println("Number of safe lines after rules modification are: " + counter.safeWithRemoval);
    }
 
-   private static Boolean isASafeLine(List<Integer> lineNumbers)
-   {
-      if (lineNumbers == null || lineNumbers.size() < 2) {
-         return false;
+   static ReportCounter processInput(List<String> input, int from, int to) {
+      ReportCounter counter = new ReportCounter();
+      for (int i = from; i < to; i++) {
+         counter.accept(input.get(i));
       }
+      return counter;
+   }
 
-      // Calculate differences between consecutive numbers
-      List<Integer> differences = IntStream.range(0, lineNumbers.size() - 1)
-            .mapToObj(i -> lineNumbers.get(i + 1) - lineNumbers.get(i))
-            .toList();
-
-      // Check if all differences are within the allowed range
-      boolean allDifferencesValid = differences.stream()
-            .allMatch(diff -> Math.abs(diff) >= 1 && Math.abs(diff) <= 3);
+   static ReportCounter processInputInParallel(List<String> input) {
+      int tasks = (input.size() + LINES_PER_TASK - 1) / LINES_PER_TASK;
+      return IntStream.range(0, tasks)
+            .parallel()
+            .mapToObj(task -> processInput(input,
+                  task * LINES_PER_TASK,
+                  Math.min(input.size(), (task + 1) * LINES_PER_TASK)))
+            .reduce(new ReportCounter(), ReportCounter::merge);
+   }
 
-      if (!allDifferencesValid) {
-         return false; // Differences are not in the allowed range
+   /**
+    * Streams reports through a reusable level buffer and only keeps the two safe counts,
+    * so memory stays flat no matter how many reports are validated.
+    */
+   static class ReportCounter {
+      private int[] levels = new int[16];
+      long safe;
+      long safeWithRemoval;
+
+      void accept(String line) {
+         int size = parseLevels(line);
+         if (size == 0) {
+            return; // empty or whitespace-only line
+         }
+         if (size < 0) {
+            System.out.println("Invalid numbers in line: '" + line.trim() + "'. Skipping...");
+            return;
+         }
+
+         if (isASafeLine(levels, size, -1)) {
+            safe++;
+            safeWithRemoval++;
+         } else if (isASafeLineWithOneLevelRemoval(levels, size)) {
+            safeWithRemoval++;
+         }
       }
 
-      // Check if the trend is consistently increasing or decreasing
-      boolean isIncreasing = differences.stream().allMatch(diff -> diff > 0);
-      boolean isDecreasing = differences.stream().allMatch(diff -> diff < 0);
+      ReportCounter merge(ReportCounter other) {
+         ReportCounter merged = new ReportCounter();
+         merged.safe = safe + other.safe;
+         merged.safeWithRemoval = safeWithRemoval + other.safeWithRemoval;
+         return merged;
+      }
 
-      return isIncreasing || isDecreasing; // Return true if consistent trend
+      // Parses the whitespace separated levels into the buffer, returns -1 for a malformed line
+      private int parseLevels(String line) {
+         int size = 0;
+         int index = 0;
+         int length = line.length();
+
+         while (index < length) {
+            char c = line.charAt(index);
+            if (Character.isWhitespace(c)) {
+               index++;
+               continue;
+            }
+
+            boolean negative = c == '-';
+            if (negative || c == '+') {
+               index++;
+            }
+            int start = index;
+            // Same range as Integer.parseInt, the magnitude of a negative level may reach 2^31
+            long limit = negative ? -(long) Integer.MIN_VALUE : Integer.MAX_VALUE;
+            long value = 0;
+            while (index < length && !Character.isWhitespace(line.charAt(index))) {
+               int digit = line.charAt(index) - '0';
+               if (digit < 0 || digit > 9) {
+                  return -1;
+               }
+               value = value * 10 + digit;
+               if (value > limit) {
+                  return -1;
+               }
+               index++;
+            }
+            if (index == start) {
+               return -1;
+            }
+
+            if (size == levels.length) {
+               levels = Arrays.copyOf(levels, size * 2);
+            }
+            levels[size++] = (int) (negative ? -value : value);
+         }
+         return size;
+      }
    }
 
-   private static Boolean isASafeLineWithOneLevelRemoval(List<Integer> lineNumbers)
+   // Checks the report while ignoring the level at skipIndex (-1 to use every level)
+   private static boolean isASafeLine(int[] levels, int size, int skipIndex)
    {
-      if (lineNumbers == null || lineNumbers.size() < 2) {
-         return false; // A single number or null doesn't meet the criteria
+      if (size - (skipIndex >= 0 ? 1 : 0) < 2) {
+         return false;
       }
 
-      // Check if the original list is already valid
-      if (isASafeLine(lineNumbers)) {
-         return true;
+      int previous = Integer.MIN_VALUE;
+      boolean hasPrevious = false;
+      int trend = 0;
+
+      for (int i = 0; i < size; i++) {
+         if (i == skipIndex) {
+            continue;
+         }
+         if (hasPrevious) {
+            int diff = levels[i] - previous;
+            if (Math.abs(diff) < 1 || Math.abs(diff) > 3) {
+               return false; // Differences are not in the allowed range
+            }
+            int direction = diff > 0 ? 1 : -1;
+            if (trend != 0 && trend != direction) {
+               return false; // Trend is not consistently increasing or decreasing
+            }
+            trend = direction;
+         }
+         previous = levels[i];
+         hasPrevious = true;
       }
-
-      // Check if removing any single element makes the list valid
-      return IntStream.range(0, lineNumbers.size())
-            .anyMatch(i -> isASafeLine(removeElement(lineNumbers, i)));
+      return true;
    }
 
-   private static List<Integer> removeElement(List<Integer> numbers, int index) {
-      return IntStream.range(0, numbers.size())
-            .filter(i -> i != index) // Skip the index to be removed
-            .mapToObj(numbers::get)
-            .toList();
+   private static boolean isASafeLineWithOneLevelRemoval(int[] levels, int size)
+   {
+      if (size < 2) {
+         return false; // A single number doesn't meet the criteria
+      }
+
+      // Check if removing any single element makes the list valid
+      for (int i = 0; i < size; i++) {
+         if (isASafeLine(levels, size, i)) {
+            return true;
+         }
+      }
+      return false;
    }
 }
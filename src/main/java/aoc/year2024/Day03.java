@@ -2,17 +2,14 @@ package aoc.year2024;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 
 public class Day03 {
-   private final List<String> input;
-   private static final String regex = "mul\\((\\d+),(\\d+)\\)";
-   private static final Pattern pattern = Pattern.compile(regex);
+   // Inputs with at least this many characters are scanned as parallel chunks
+   private static final long PARALLEL_THRESHOLD = 1L << 20;
+   static final int CHUNK_SIZE = 1 << 16;
 
-   private static final String regexWithFlags = "mul\\(\\d+,\\d+\\)|do\\(\\)|don't\\(\\)";
-   private static final Pattern patternWithFlags = Pattern.compile(regexWithFlags);
+   private final List<String> input;
 
    public Day03(List<String> input) {
       this.input = input;
@@ -24,63 +21,201 @@ public class Day03 {
       {
          throw new IllegalArgumentException("Input list cannot be null or empty");
       }
-      long sumOfMultiplications = processInputAndCalculateMulSum(input, pattern);
-      System.out.println("Total Sum of all multiplications: " + sumOfMultiplications);
+      long totalLength = input.stream().mapToLong(String::length).sum();
+      MulScanner scanner = totalLength >= PARALLEL_THRESHOLD ? scanInParallel(input) : scanSequentially(input);
 
-      long sumOfFilteredMultiplications = processInputWithFlagsAndCalculateMulSum(input, patternWithFlags);
-      System.out.println("Total Sum of all refined multiplications: " + sumOfFilteredMultiplications);
+      System.out.println("Total Sum of all multiplications: " + scanner.sumOfMultiplications);
+      System.out.println("Total Sum of all refined multiplications: " + scanner.sumIfEnabledAtStart());
+   }
+
+   static MulScanner scanSequentially(List<String> input) {
+      MulScanner scanner = new MulScanner();
+      for (String line : input) {
+         scanner.scan(line, 0, line.length());
+      }
+      return scanner;
    }
 
-   private static long processInputAndCalculateMulSum(List<String> input, Pattern pattern) {
-      return input.stream()
-            .flatMap(line -> pattern.matcher(line).results()) // Get matches as a stream
-            .mapToLong(match -> {
-               int number1 = Integer.parseInt(match.group(1));
-               int number2 = Integer.parseInt(match.group(2));
-               return (long) number1 * number2; // Calculate product
+   static MulScanner scanInParallel(List<String> input) {
+      // Split every line into chunks; each chunk owns the tokens that start inside it
+      List<int[]> chunks = new ArrayList<>();
+      for (int lineIndex = 0; lineIndex < input.size(); lineIndex++) {
+         int length = input.get(lineIndex).length();
+         for (int from = 0; from < length; from += CHUNK_SIZE) {
+            chunks.add(new int[] { lineIndex, from, Math.min(length, from + CHUNK_SIZE) });
+         }
+      }
+
+      // The ordered reduce keeps chunk order, which the do/don't merge relies on
+      return chunks.parallelStream()
+            .map(chunk -> {
+               MulScanner scanner = new MulScanner();
+               scanner.scan(input.get(chunk[0]), chunk[1], chunk[2]);
+               return scanner;
             })
-            .sum(); // Sum up all products
+            .reduce(new MulScanner(), MulScanner::combine);
    }
 
-   private static long processInputWithFlagsAndCalculateMulSum(List<String> input, Pattern pattern) {
-      boolean[] shouldSkip = {false}; // Use an array to hold the boolean since lambda requires effectively final variables
-      return input.stream()
-            .flatMap(line -> {
-               Matcher matcher = pattern.matcher(line);
-               List<String> matches = new ArrayList<>();
-               while (matcher.find())
-               {
-                  matches.add(matcher.group());
+   /**
+    * Finite-state scanner recognising {@code mul(a,b)}, {@code do()} and {@code don't()} in a single pass.
+    * Both sums are accumulated at once and nothing is allocated while scanning.
+    * Tokens never span lines, but the do/don't flag carries over from one line to the next.
+    * <p>
+    * A scanner does not need to know the flag it starts with: products seen before its first toggle are kept
+    * apart, which gives the (sum-if-enabled-at-start, sum-if-disabled-at-start, final state, saw-toggle) summary
+    * that {@link #combine} merges associatively for the parallel scan.
+    */
+   static class MulScanner {
+      // States are named after the text matched so far
+      private static final int START = 0;
+      private static final int M = 1;
+      private static final int MU = 2;
+      private static final int MUL = 3;
+      private static final int MUL_OPEN = 4;        // "mul("
+      private static final int FIRST_NUMBER = 5;    // "mul(1"
+      private static final int COMMA = 6;           // "mul(1,"
+      private static final int SECOND_NUMBER = 7;   // "mul(1,2"
+      private static final int D = 8;
+      private static final int DO = 9;
+      private static final int DO_OPEN = 10;        // "do("
+      private static final int DON = 11;
+      private static final int DON_APOSTROPHE = 12; // "don'"
+      private static final int DONT = 13;           // "don't"
+      private static final int DONT_OPEN = 14;      // "don't("
+
+      long sumOfMultiplications;
+      // Enabled products seen before the first do/don't, they only count when the scan started enabled
+      long sumBeforeToggle;
+      // Enabled products seen after the first do/don't, they count regardless of the starting state
+      long sumAfterToggle;
+      boolean sawToggle;
+      // Only meaningful once sawToggle is set
+      boolean enabled;
+
+      long sumIfEnabledAtStart() {
+         return sumBeforeToggle + sumAfterToggle;
+      }
+
+      long sumIfDisabledAtStart() {
+         return sumAfterToggle;
+      }
+
+      /**
+       * Scans the tokens starting in [from, to) of the line. A token that starts before {@code to} is
+       * finished even if it runs past it, so adjacent chunks of one line never lose or double count a token.
+       */
+      void scan(CharSequence line, int from, int to) {
+         int state = START;
+         long first = 0;
+         long second = 0;
+
+         for (int i = from, length = line.length(); i < length; i++) {
+            if (i >= to && state == START) {
+               break;
+            }
+            char c = line.charAt(i);
+            boolean digit = c >= '0' && c <= '9';
+
+            switch (state) {
+               case M -> state = c == 'u' ? MU : START;
+               case MU -> state = c == 'l' ? MUL : START;
+               case MUL -> state = c == '(' ? MUL_OPEN : START;
+               case MUL_OPEN -> {
+                  if (digit) {
+                     first = c - '0';
+                     state = FIRST_NUMBER;
+                  } else {
+                     state = START;
+                  }
                }
-               return matches.stream();
-            })
-            .mapToLong(match -> {
-               if (match.equals("don't()")) {
-                  shouldSkip[0] = true;
-                  // System.out.println("Found 'don't()', skipping further calculations.");
-                  return 0;
-               } else if (match.equals("do()")) {
-                  shouldSkip[0] = false;
-                  // System.out.println("Found 'do()', resuming calculations.");
-                  return 0;
-               } else if (!shouldSkip[0]) {
-                  // Extract numbers within mul(...)
-                  String[] numbers = match.substring(4, match.length() - 1).split(",");
-                  if (numbers.length == 2) {
-                     try {
-                        int number1 = Integer.parseInt(numbers[0].trim());
-                        int number2 = Integer.parseInt(numbers[1].trim());
-                        // System.out.printf("Processing %s => Product: %d%n", match, product);
-                        return (long) number1 * number2;
-                     } catch (NumberFormatException e) {
-                        // System.err.println("Invalid number format in " + Arrays.toString(numbers));
-                     }
+               case FIRST_NUMBER -> {
+                  if (digit) {
+                     first = first * 10 + (c - '0');
                   } else {
-                     System.err.println("Unexpected format for multiplication in: " + match);
+                     state = c == ',' ? COMMA : START;
                   }
                }
-               return 0;
-            })
-            .sum();
+               case COMMA -> {
+                  if (digit) {
+                     second = c - '0';
+                     state = SECOND_NUMBER;
+                  } else {
+                     state = START;
+                  }
+               }
+               case SECOND_NUMBER -> {
+                  if (digit) {
+                     second = second * 10 + (c - '0');
+                  } else {
+                     if (c == ')') {
+                        long product = first * second;
+                        sumOfMultiplications += product;
+                        if (!sawToggle) {
+                           sumBeforeToggle += product;
+                        } else if (enabled) {
+                           sumAfterToggle += product;
+                        }
+                     }
+                     state = START;
+                  }
+               }
+               case D -> state = c == 'o' ? DO : START;
+               case DO -> state = c == '(' ? DO_OPEN : c == 'n' ? DON : START;
+               case DO_OPEN -> {
+                  if (c == ')') {
+                     toggle(true);
+                  }
+                  state = START;
+               }
+               case DON -> state = c == '\'' ? DON_APOSTROPHE : START;
+               case DON_APOSTROPHE -> state = c == 't' ? DONT : START;
+               case DONT -> state = c == '(' ? DONT_OPEN : START;
+               case DONT_OPEN -> {
+                  if (c == ')') {
+                     toggle(false);
+                  }
+                  state = START;
+               }
+               default -> {
+               }
+            }
+
+            // A token can only start with 'm' or 'd', so a failed partial match restarts on the current char
+            // Tokens starting at or after `to` belong to the next chunk
+            if (state == START && i < to) {
+               state = c == 'm' ? M : c == 'd' ? D : START;
+            }
+         }
+      }
+
+      private void toggle(boolean enable) {
+         sawToggle = true;
+         enabled = enable;
+      }
+
+      /**
+       * Merges the summaries of two consecutive scans, {@code this} being the earlier one.
+       * A fresh scanner is the identity element.
+       */
+      MulScanner combine(MulScanner next) {
+         MulScanner merged = new MulScanner();
+         merged.sumOfMultiplications = sumOfMultiplications + next.sumOfMultiplications;
+
+         if (!sawToggle) {
+            // The next scan starts in the same unknown state as this one
+            merged.sumBeforeToggle = sumBeforeToggle + next.sumBeforeToggle;
+            merged.sumAfterToggle = next.sumAfterToggle;
+            merged.sawToggle = next.sawToggle;
+            merged.enabled = next.enabled;
+         } else {
+            // The next scan starts in this scan's final state
+            merged.sumBeforeToggle = sumBeforeToggle;
+            merged.sumAfterToggle = sumAfterToggle
+                  + (enabled ? next.sumIfEnabledAtStart() : next.sumIfDisabledAtStart());
+            merged.sawToggle = true;
+            merged.enabled = next.sawToggle ? next.enabled : enabled;
+         }
+         return merged;
+      }
    }
 }
@@ -1,12 +1,16 @@
 package aoc.year2024;
 
+import java.util.Arrays;
 import java.util.List;
+import java.util.stream.IntStream;
 
 
 public class Day04
 {
    private final List<String> input;
    private static final String searchWord = "XMAS";
+   // Grids with at least this many cells are processed in parallel row bands
+   private static final long PARALLEL_THRESHOLD = 1L << 22;
 
    public Day04(List<String> input)
    {
@@ -22,12 +26,14 @@ public class Day04
 
       validateGrid(input);
 
-      int countXMASWord = countXMASWordOccurrences(searchWord, input);
+      boolean parallel = (long) input.size() * input.get(0).length() >= PARALLEL_THRESHOLD;
+      LetterBitboard bitboard = new LetterBitboard(input, searchWord, parallel);
+      long countXMASWord = bitboard.countWord(searchWord);
 
       // Print the result
       System.out.printf("The word \"%s\" occurs %d times in the grid.%n", searchWord, countXMASWord);
 
-      int countXShapeMAS = countXShapeMAS(input);
+      long countXShapeMAS = bitboard.countXShape();
       System.out.printf("Total occurrences of X-shaped MAS: %d%n", countXShapeMAS);
    }
 
@@ -41,81 +47,317 @@ public class Day04
       }
    }
 
-   private int countXMASWordOccurrences(String word, List<String> gridData) {
-      int rows = gridData.size();
-      int cols = gridData.get(0).length();
-      int wordLength = word.length();
-      int count = 0;
-
-      char[][] gridArray = convertToGridArray(gridData);
-
-      int[][] directions = {
+   /**
+    * Bit-plane view of the grid: one {@code long[]} per row and letter, bit {@code c} set when the cell in
+    * column {@code c} holds that letter. A word is matched 64 cells at a time by ANDing the planes of its letters,
+    * each shifted to its offset along the direction, and counting the surviving bits.
+    * Rows are processed in independent bands, in parallel when requested.
+    */
+   static class LetterBitboard
+   {
+      private static final int BAND_ROWS = 256;
+      private static final int[][] DIRECTIONS = {
             {0, 1}, {0, -1}, {1, 0}, {-1, 0},
             {1, 1}, {-1, -1}, {1, -1}, {-1, 1}
       };
 
-      for (int row = 0; row < rows; row++) {
-         for (int col = 0; col < cols; col++) {
-            for (int[] direction : directions) {
-               if (matchesWord(gridArray, word, row, col, direction, wordLength)) {
-                  count++;
+      private final int rows;
+      private final int words;
+      private final String letters;
+      // planes[letter][row][word]
+      private final long[][][] planes;
+      private final boolean parallel;
+
+      LetterBitboard(List<String> grid, String letters, boolean parallel)
+      {
+         this.rows = grid.size();
+         this.words = (grid.get(0).length() + 63) >>> 6;
+         this.letters = letters;
+         this.parallel = parallel;
+         this.planes = new long[letters.length()][rows][words];
+
+         rowStream(0, rows).forEach(row -> {
+            String line = grid.get(row);
+            for (int col = 0; col < line.length(); col++) {
+               int letter = letters.indexOf(line.charAt(col));
+               if (letter >= 0) {
+                  planes[letter][row][col >>> 6] |= 1L << col;
                }
             }
+         });
+      }
+
+      /**
+       * Counts the occurrences of the word in all 8 directions.
+       */
+      long countWord(String word)
+      {
+         long[][][] wordPlanes = new long[word.length()][][];
+         for (int i = 0; i < word.length(); i++) {
+            wordPlanes[i] = plane(word.charAt(i));
          }
+
+         return bandStream().mapToLong(band -> {
+            long count = 0;
+            for (int[] direction : DIRECTIONS) {
+               for (int row = band; row < Math.min(rows, band + BAND_ROWS); row++) {
+                  int lastRow = row + (word.length() - 1) * direction[0];
+                  if (lastRow < 0 || lastRow >= rows) {
+                     continue;
+                  }
+                  for (int w = 0; w < words; w++) {
+                     long matches = wordPlanes[0][row][w];
+                     for (int i = 1; i < word.length() && matches != 0; i++) {
+                        matches &= shifted(wordPlanes[i][row + i * direction[0]], w, i * direction[1]);
+                     }
+                     count += Long.bitCount(matches);
+                  }
+               }
+            }
+            return count;
+         }).sum();
+      }
+
+      /**
+       * Counts the 'A' cells whose two diagonals both read MAS in either direction.
+       */
+      long countXShape()
+      {
+         long[][] m = plane('M');
+         long[][] a = plane('A');
+         long[][] s = plane('S');
+
+         return bandStream().mapToLong(band -> {
+            long count = 0;
+            for (int row = Math.max(1, band); row < Math.min(rows - 1, band + BAND_ROWS); row++) {
+               for (int w = 0; w < words; w++) {
+                  long centers = a[row][w];
+                  if (centers == 0) {
+                     continue;
+                  }
+                  long topLeftM = shifted(m[row - 1], w, -1);
+                  long topLeftS = shifted(s[row - 1], w, -1);
+                  long topRightM = shifted(m[row - 1], w, 1);
+                  long topRightS = shifted(s[row - 1], w, 1);
+                  long bottomLeftM = shifted(m[row + 1], w, -1);
+                  long bottomLeftS = shifted(s[row + 1], w, -1);
+                  long bottomRightM = shifted(m[row + 1], w, 1);
+                  long bottomRightS = shifted(s[row + 1], w, 1);
+
+                  long diagonal = (topLeftM & bottomRightS) | (topLeftS & bottomRightM);
+                  long antiDiagonal = (topRightM & bottomLeftS) | (topRightS & bottomLeftM);
+                  count += Long.bitCount(centers & diagonal & antiDiagonal);
+               }
+            }
+            return count;
+         }).sum();
       }
-      return count;
-   }
 
-   private char[][] convertToGridArray(List<String> grid) {
-      int rows = grid.size();
-      int cols = grid.get(0).length();
-      char[][] gridArray = new char[rows][cols];
-      for (int i = 0; i < rows; i++) {
-         gridArray[i] = grid.get(i).toCharArray();
+      private long[][] plane(char letter)
+      {
+         int index = letters.indexOf(letter);
+         if (index < 0) {
+            throw new IllegalArgumentException("No bit-plane for letter '" + letter + "'");
+         }
+         return planes[index];
       }
-      return gridArray;
-   }
 
-   private boolean matchesWord(char[][] grid, String word, int row, int col, int[] direction, int wordLength) {
-      int rows = grid.length;
-      int cols = grid[0].length;
-      for (int i = 0; i < wordLength; i++) {
-         if (row < 0 || row >= rows || col < 0 || col >= cols || grid[row][col] != word.charAt(i)) {
-            return false;
+      // Returns the 64 bits of the row for columns [64 * w + offset, 64 * w + offset + 63], zero outside the grid
+      private long shifted(long[] row, int w, int offset)
+      {
+         if (offset >= 0) {
+            int from = w + (offset >>> 6);
+            int bits = offset & 63;
+            long low = from < words ? row[from] : 0;
+            if (bits == 0) {
+               return low;
+            }
+            long high = from + 1 < words ? row[from + 1] : 0;
+            return (low >>> bits) | (high << (64 - bits));
          }
-         row += direction[0];
-         col += direction[1];
+
+         int from = w - (-offset >>> 6);
+         int bits = -offset & 63;
+         long high = from >= 0 ? row[from] : 0;
+         if (bits == 0) {
+            return high;
+         }
+         long low = from - 1 >= 0 ? row[from - 1] : 0;
+         return (high << bits) | (low >>> (64 - bits));
+      }
+
+      private IntStream rowStream(int from, int to)
+      {
+         IntStream stream = IntStream.range(from, to);
+         return parallel ? stream.parallel() : stream;
+      }
+
+      private IntStream bandStream()
+      {
+         IntStream stream = IntStream.iterate(0, band -> band < rows, band -> band + BAND_ROWS);
+         return parallel ? stream.parallel() : stream;
       }
-      return true;
    }
 
-   private static int countXShapeMAS(List<String> grid) {
-      int rows = grid.size();
-      int cols = grid.get(0).length();
-      int count = 0;
+   /**
+    * Multi-word search over a letter grid. The dictionary is compiled once into an Aho-Corasick automaton,
+    * then every row, column and diagonal is streamed through it in both directions, so a search costs
+    * O(cells x directions) no matter how many words the dictionary holds.
+    * Like the plain search, a word is counted once per cell and direction it can be read in.
+    */
+   static class WordSearch
+   {
+      // Every line family is also read in the opposite direction, which covers all 8 directions
+      private static final int[][] LINE_DIRECTIONS = { {0, 1}, {1, 0}, {1, 1}, {1, -1} };
 
-      for (int i = 1; i < rows - 1; i++) {
-         for (int j = 1; j < cols - 1; j++) {
-            if (isXShape(grid, i, j)) {
-               count++;
+      private final int wordCount;
+      // Automaton state reached after reading each dictionary word
+      private final int[] wordStates;
+      // Maps a grid character to its alphabet index, -1 for characters no word contains
+      private final int[] charIndex;
+      private final int alphabetSize;
+      // transitions[state * alphabetSize + letter] = next state, fail links already folded in
+      private final int[] transitions;
+      // States in breadth-first order together with their fail links, used to propagate hit counts
+      private final int[] bfsOrder;
+      private final int[] fail;
+
+      WordSearch(List<String> words)
+      {
+         wordCount = words.size();
+         wordStates = new int[wordCount];
+
+         int maxChar = 0;
+         for (String word : words) {
+            if (word.isEmpty()) {
+               throw new IllegalArgumentException("Search words cannot be empty");
+            }
+            for (int i = 0; i < word.length(); i++) {
+               maxChar = Math.max(maxChar, word.charAt(i));
+            }
+         }
+         charIndex = new int[maxChar + 1];
+         Arrays.fill(charIndex, -1);
+         int letters = 0;
+         for (String word : words) {
+            for (int i = 0; i < word.length(); i++) {
+               if (charIndex[word.charAt(i)] == -1) {
+                  charIndex[word.charAt(i)] = letters++;
+               }
+            }
+         }
+         alphabetSize = letters;
+
+         // 1) Build the trie
+         int maxStates = 1 + words.stream().mapToInt(String::length).sum();
+         int[] trie = new int[maxStates * alphabetSize];
+         Arrays.fill(trie, -1);
+         int states = 1;
+         for (int w = 0; w < wordCount; w++) {
+            String word = words.get(w);
+            int state = 0;
+            for (int i = 0; i < word.length(); i++) {
+               int slot = state * alphabetSize + charIndex[word.charAt(i)];
+               if (trie[slot] == -1) {
+                  trie[slot] = states++;
+               }
+               state = trie[slot];
+            }
+            wordStates[w] = state;
+         }
+
+         // 2) Breadth-first pass computing fail links and the complete transition table
+         transitions = Arrays.copyOf(trie, states * alphabetSize);
+         fail = new int[states];
+         bfsOrder = new int[states];
+         int head = 0;
+         int tail = 0;
+         bfsOrder[tail++] = 0;
+         while (head < tail) {
+            int state = bfsOrder[head++];
+            for (int letter = 0; letter < alphabetSize; letter++) {
+               int slot = state * alphabetSize + letter;
+               int child = transitions[slot];
+               int fallback = state == 0 ? 0 : transitions[fail[state] * alphabetSize + letter];
+               if (child == -1) {
+                  transitions[slot] = fallback;
+               } else {
+                  fail[child] = fallback;
+                  bfsOrder[tail++] = child;
+               }
             }
          }
       }
-      return count;
-   }
 
-   private static boolean isXShape(List<String> grid, int row, int col) {
-      char center = grid.get(row).charAt(col);
-      if (center != 'A') {
-         return false;
+      /**
+       * Counts how often each dictionary word occurs in the grid.
+       *
+       * @param grid rectangular letter grid
+       * @return occurrence counts indexed like the dictionary passed to the constructor
+       */
+      long[] countOccurrences(char[][] grid)
+      {
+         int rows = grid.length;
+         int cols = grid[0].length;
+         long[] hits = new long[fail.length];
+
+         for (int[] direction : LINE_DIRECTIONS) {
+            int dRow = direction[0];
+            int dCol = direction[1];
+            for (int row = 0; row < rows; row++) {
+               for (int col = 0; col < cols; col++) {
+                  int previousRow = row - dRow;
+                  int previousCol = col - dCol;
+                  boolean lineStart = previousRow < 0 || previousRow >= rows || previousCol < 0 || previousCol >= cols;
+                  if (lineStart) {
+                     scanLine(grid, row, col, dRow, dCol, hits);
+                  }
+               }
+            }
+         }
+
+         // A hit on a state is also a hit on every state along its fail chain
+         for (int i = bfsOrder.length - 1; i > 0; i--) {
+            int state = bfsOrder[i];
+            hits[fail[state]] += hits[state];
+         }
+
+         long[] counts = new long[wordCount];
+         for (int w = 0; w < wordCount; w++) {
+            counts[w] = hits[wordStates[w]];
+         }
+         return counts;
       }
 
-      char topLeft = grid.get(row - 1).charAt(col - 1);
-      char topRight = grid.get(row - 1).charAt(col + 1);
-      char bottomLeft = grid.get(row + 1).charAt(col - 1);
-      char bottomRight = grid.get(row + 1).charAt(col + 1);
+      // Streams one line forwards from (row, col) and then backwards from its last cell
+      private void scanLine(char[][] grid, int row, int col, int dRow, int dCol, long[] hits)
+      {
+         int rows = grid.length;
+         int cols = grid[0].length;
+         int state = 0;
+         int length = 0;
+
+         while (row >= 0 && row < rows && col >= 0 && col < cols) {
+            state = step(state, grid[row][col]);
+            hits[state]++;
+            row += dRow;
+            col += dCol;
+            length++;
+         }
+
+         state = 0;
+         for (int i = 0; i < length; i++) {
+            row -= dRow;
+            col -= dCol;
+            state = step(state, grid[row][col]);
+            hits[state]++;
+         }
+      }
 
-      return (topLeft == 'M' && bottomRight == 'S' || topLeft == 'S' && bottomRight == 'M') &&
-            (topRight == 'M' && bottomLeft == 'S' || topRight == 'S' && bottomLeft == 'M');
+      private int step(int state, char c)
+      {
+         int letter = c < charIndex.length ? charIndex[c] : -1;
+         return letter == -1 ? 0 : transitions[state * alphabetSize + letter];
+      }
    }
 }
@@ -1,18 +1,18 @@
 package aoc.year2024;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 
 public class Day05
 {
    private final List<String> input;
-   Map<Integer, List<Integer>> rulesMap = new HashMap<>();
-   private final List<List<Integer>> listOfUpdates = new ArrayList<>();
-   private int partOneSum = 0;
-   private int partTwoSum = 0;
 
    public Day05(List<String> input)
    {
@@ -26,122 +26,243 @@ public class Day05
          throw new IllegalArgumentException("Input list cannot be null or empty");
       }
 
-      makeTheMapRuleAndListOfUpdates(input);
-      calculatePartOneSumAndPart2Sum();
+      UpdateSums sums = evaluate(input.stream());
 
-      System.out.println("Part 1: " + partOneSum);
-      System.out.println("Part 2: " + partTwoSum);
+      System.out.println("Part 1: " + sums.partOneSum);
+      System.out.println("Part 2: " + sums.partTwoSum);
    }
 
-
-
-   private void makeTheMapRuleAndListOfUpdates(List<String> input)
+   /**
+    * Compiles the rule section and then evaluates the update section in parallel while it is still being read.
+    * The lines are consumed lazily, so a stream such as {@code Files.lines(path)} starts validating updates
+    * before the whole file is loaded.
+    *
+    * @param lines the puzzle input, rules first, then a blank line, then one update per line
+    * @return the sums of the middle pages of the valid and the reordered updates
+    */
+   static UpdateSums evaluate(Stream<String> lines)
    {
-      boolean isSecondPart = false;
+      Iterator<String> iterator = lines.iterator();
 
-      for (String line : input)
+      List<int[]> rules = new ArrayList<>();
+      while (iterator.hasNext())
       {
+         String line = iterator.next();
          if (line.trim().isEmpty())
          {
-            // Blank line indicates the transition between map and list of lists
-            isSecondPart = true;
-            continue;
+            // Blank line indicates the transition between rules and list of updates
+            break;
          }
+         rules.add(parseRule(line));
+      }
+      PrecedenceRules precedenceRules = new PrecedenceRules(rules);
+
+      // The iterator spliterator hands out batches of lines to the worker threads as they are read
+      Stream<String> updateLines = StreamSupport.stream(
+            Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL), true);
+
+      return updateLines
+            .filter(line -> !line.trim().isEmpty())
+            .collect(UpdateSums::new,
+                  (sums, line) -> sums.add(precedenceRules, parsePages(line)),
+                  UpdateSums::combine);
+   }
+
+   private static int[] parseRule(String line)
+   {
+      int separator = line.indexOf('|');
+      if (separator < 0)
+      {
+         throw new IllegalArgumentException("Invalid rule: '" + line + "'");
+      }
+      return new int[] { parseNumber(line, 0, separator), parseNumber(line, separator + 1, line.length()) };
+   }
 
-         if (!isSecondPart)
+   private static int[] parsePages(String line)
+   {
+      int count = 1;
+      for (int i = 0; i < line.length(); i++)
+      {
+         if (line.charAt(i) == ',')
          {
-            // Parsing the first part into a map
-            String[] parts = line.split("\\|");
-            int key = Integer.parseInt(parts[0].trim());
-            int value = Integer.parseInt(parts[1].trim());
-
-            // Add the value to the list of values for the key
-            rulesMap.putIfAbsent(key, new ArrayList<>());
-            rulesMap.get(key).add(value);
+            count++;
          }
-         else
+      }
+
+      int[] pages = new int[count];
+      int from = 0;
+      for (int i = 0; i < count; i++)
+      {
+         int to = line.indexOf(',', from);
+         if (to < 0)
          {
-            // Parsing the second part into a list of lists
-            String[] parts = line.split(",");
-            List<Integer> numbers = new ArrayList<>();
-            for (String part : parts)
-            {
-               numbers.add(Integer.parseInt(part.trim()));
-            }
-            listOfUpdates.add(numbers);
+            to = line.length();
          }
+         pages[i] = parseNumber(line, from, to);
+         from = to + 1;
       }
+      return pages;
    }
 
-   private void calculatePartOneSumAndPart2Sum()
+   // Parses the non-negative number in [from, to), surrounding whitespace is ignored
+   private static int parseNumber(String line, int from, int to)
    {
-      for(List<Integer> updateList : listOfUpdates)
+      while (from < to && Character.isWhitespace(line.charAt(from))) from++;
+      while (to > from && Character.isWhitespace(line.charAt(to - 1))) to--;
+      if (from == to)
       {
-          if(followsTheRules(updateList))
-          {
-             partOneSum += getTheMiddleElement(updateList);
-          }
-          else {
-             updateList = reorderList(updateList);
-             partTwoSum += getTheMiddleElement(updateList);
-          }
+         throw new IllegalArgumentException("Missing page number in line: '" + line + "'");
       }
+
+      int value = 0;
+      for (int i = from; i < to; i++)
+      {
+         int digit = line.charAt(i) - '0';
+         if (digit < 0 || digit > 9)
+         {
+            throw new IllegalArgumentException("Invalid page number in line: '" + line + "'");
+         }
+         value = value * 10 + digit;
+      }
+      return value;
    }
 
+   private static int getTheMiddleElement(int[] pages)
+   {
+      if (pages == null || pages.length == 0) {
+         throw new IllegalArgumentException("The list cannot be null or empty");
+      }
+      return pages[pages.length / 2];
+   }
 
-   private boolean followsTheRules(List<Integer> updateList)
+   /**
+    * Per-task accumulator of the two answers, merged once the parallel evaluation finishes.
+    */
+   static class UpdateSums
    {
-      for (int index = 0; index < updateList.size(); index++) {
-         Integer number = updateList.get(index);
-         if (rulesMap.containsKey(number)) {
-            List<Integer> currentKeyRules = rulesMap.get(number);
-            for(Integer currentKeyRule : currentKeyRules)
-            {
-               int ruleIndex = updateList.indexOf(currentKeyRule);
-               // If the rule exists in the list and appears before the current number
-               if (ruleIndex != -1 && ruleIndex < index) {
-                  return false;
-               }
-            }
+      long partOneSum;
+      long partTwoSum;
 
+      void add(PrecedenceRules rules, int[] update)
+      {
+         if (rules.followsTheRules(update))
+         {
+            partOneSum += getTheMiddleElement(update);
+         }
+         else
+         {
+            partTwoSum += getTheMiddleElement(rules.reorder(update));
          }
       }
-      return true;
+
+      void combine(UpdateSums other)
+      {
+         partOneSum += other.partOneSum;
+         partTwoSum += other.partTwoSum;
+      }
    }
 
-   private int getTheMiddleElement(List<Integer> numbers)
+   /**
+    * Page ordering rules compiled into a precedence bit-matrix: bit {@code before * size + after} is set
+    * when a rule requires {@code before} to be printed before {@code after}.
+    * Sized by the largest page number that appears in a rule, up to the largest matrix a {@code long[]} can hold.
+    * Never modified after construction, so one instance is shared by all threads evaluating updates.
+    */
+   static final class PrecedenceRules
    {
-      if (numbers == null || numbers.isEmpty()) {
-         throw new IllegalArgumentException("The list cannot be null or empty");
+      // Largest long[] most JVMs can allocate
+      private static final long MAX_WORDS = Integer.MAX_VALUE - 8;
+
+      private final int size;
+      private final long[] bits;
+
+      PrecedenceRules(List<int[]> rules)
+      {
+         int maxPage = 0;
+         for (int[] rule : rules) {
+            if (rule[0] < 0 || rule[1] < 0) {
+               throw new IllegalArgumentException("Page numbers cannot be negative: " + rule[0] + "|" + rule[1]);
+            }
+            maxPage = Math.max(maxPage, Math.max(rule[0], rule[1]));
+         }
+         size = maxPage + 1;
+         long words = ((long) size * size + 63) >>> 6;
+         if (words > MAX_WORDS) {
+            throw new IllegalArgumentException("Page number " + maxPage + " is too large for the precedence matrix");
+         }
+         bits = new long[(int) words];
+         for (int[] rule : rules) {
+            long bit = bitIndex(rule[0], rule[1]);
+            bits[(int) (bit >>> 6)] |= 1L << bit;
+         }
       }
-      int middleIndex = numbers.size() / 2;
-      return numbers.get(middleIndex);
-   }
 
-   private List<Integer> reorderList(List<Integer> updateList) {
-      List<Integer> result = new ArrayList<>(updateList);
-      boolean reordered;
-
-      do {
-         reordered = false;
-         for (int index = 0; index < result.size(); index++) {
-            Integer number = result.get(index);
-            List<Integer> currentKeyRules = rulesMap.get(number);
-            for (Integer currentKeyRule : currentKeyRules) {
-               int ruleIndex = result.indexOf(currentKeyRule);
-               // If the rule exists in the list and appears before the current number, swap them
-               if (ruleIndex != -1 && ruleIndex > index) {
-                  // Move `currentKeyRule` to appear before `number`
-                  result.remove(ruleIndex);
-                  result.add(index, currentKeyRule);
-                  reordered = true;
-                  break; // Reevaluate from the beginning after changes
+      // Past about 46k pages the index no longer fits an int
+      private long bitIndex(int before, int after)
+      {
+         return (long) before * size + after;
+      }
+
+      boolean mustPrecede(int before, int after)
+      {
+         if (before < 0 || before >= size || after < 0 || after >= size) {
+            return false; // No rule mentions this page
+         }
+         long bit = bitIndex(before, after);
+         return (bits[(int) (bit >>> 6)] & (1L << bit)) != 0;
+      }
+
+      // An update is valid when no later page is required to come before an earlier one
+      boolean followsTheRules(int[] pages)
+      {
+         for (int i = 0; i < pages.length; i++) {
+            for (int j = i + 1; j < pages.length; j++) {
+               if (mustPrecede(pages[j], pages[i])) {
+                  return false;
+               }
+            }
+         }
+         return true;
+      }
+
+      /**
+       * Topologically sorts the pages on the rules restricted to this update. Among the pages that are free
+       * to go next, the one appearing first in the original update is picked, so unrelated pages keep their order.
+       */
+      int[] reorder(int[] pages)
+      {
+         int k = pages.length;
+         int[] pendingBefore = new int[k];
+         for (int i = 0; i < k; i++) {
+            for (int j = 0; j < k; j++) {
+               if (i != j && mustPrecede(pages[j], pages[i])) {
+                  pendingBefore[i]++;
                }
             }
-            if (reordered) break;
          }
-      } while (reordered);
 
-      return result;
+         int[] result = new int[k];
+         boolean[] placed = new boolean[k];
+         for (int position = 0; position < k; position++) {
+            int next = -1;
+            for (int i = 0; i < k && next == -1; i++) {
+               if (!placed[i] && pendingBefore[i] == 0) {
+                  next = i;
+               }
+            }
+            if (next == -1) {
+               throw new IllegalArgumentException("The rules for update " + Arrays.toString(pages) + " contain a cycle");
+            }
+
+            placed[next] = true;
+            result[position] = pages[next];
+            for (int i = 0; i < k; i++) {
+               if (!placed[i] && mustPrecede(pages[next], pages[i])) {
+                  pendingBefore[i]--;
+               }
+            }
+         }
+         return result;
+      }
    }
 }
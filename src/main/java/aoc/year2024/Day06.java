@@ -1,34 +1,24 @@
 package aoc.year2024;
 
-import java.util.HashMap;
-import java.util.HashSet;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
-import java.util.Set;
+import java.util.stream.IntStream;
 
 
 public class Day06
 {
    public static final char DOT = '.';
    private final List<String> input;
-   private final Map<Character, Character> nextDirectionMap = new HashMap<>();
+   // Ordered so that turning right means moving to the next entry
    private final List<Character> directions = List.of('^', '>', 'v', '<');
-   private static final char VISITED = 'X';
    private static final char BLOCK = '#';
+   // Loop candidates tested by one parallel task, which allocates one visited-state bitset for them
+   private static final int CANDIDATES_PER_TASK = 1024;
    private Character startCharacter;
 
    public Day06(List<String> input)
    {
       this.input = input;
-      makeTheDirectionsMap(nextDirectionMap);
-   }
-
-   private void makeTheDirectionsMap(Map<Character, Character> directionsMap)
-   {
-      directionsMap.put('^', '>');
-      directionsMap.put('>', 'v');
-      directionsMap.put('v', '<');
-      directionsMap.put('<', '^');
    }
 
    public void solve()
@@ -38,21 +28,24 @@ public class Day06
          throw new IllegalArgumentException("Input list cannot be null or empty");
       }
 
-      char[][] partOneGrid = makeTheGrid(input);
-      char[][] partTwoGrid = makeTheGrid(input);
-
+      char[][] grid = makeTheGrid(input);
 
-      int[] position = findGuardStartCharacterAndPosition(partOneGrid, directions);
+      int[] position = findGuardStartCharacterAndPosition(grid, directions);
 
       if(position == null)
       {
          throw new IllegalArgumentException("Input list cannot be null or empty");
       }
-      
-      int numOfXInGrid = countGuardMoves(partOneGrid, position, startCharacter);
+
+      PatrolMap patrolMap = new PatrolMap(grid);
+      int startCell = patrolMap.cellOf(position[0], position[1]);
+      int startDirection = directions.indexOf(startCharacter);
+
+      PatrolTrace trace = patrolMap.tracePatrol(startCell, startDirection);
+      int numOfXInGrid = trace.size + 1; // The start cell is visited too
       System.out.println("Part 1: " + numOfXInGrid);
 
-      int numOfLoopsCreated = countPossibleLoopToBeMade(partTwoGrid, position, startCharacter);
+      int numOfLoopsCreated = countPossibleLoopToBeMade(grid, patrolMap, trace);
       System.out.println("Part 2: " + numOfLoopsCreated);
    }
 
@@ -83,107 +76,268 @@ public class Day06
       return null; // Return null if the character is not found
    }
 
-   private int countGuardMoves(char[][] grid, int[] position, Character currentDirection) {
-      int moveCount = 1; // Start counting the initial position as visited.
+   /**
+    * Only an obstacle on the original patrol path can change the route, so the candidates come from the part 1
+    * trace. Each simulation resumes from the state just before the guard first reaches the candidate. The
+    * candidates are tested in parallel ranges, each range reusing a visited-state bitset of its own that is
+    * dropped once the range is done.
+    */
+   private static int countPossibleLoopToBeMade(char[][] grid, PatrolMap patrolMap, PatrolTrace trace) {
+      int cols = grid[0].length;
 
-      while (true) {
-         // Mark current position as visited.
-         grid[position[0]][position[1]] = VISITED;
+      return IntStream.range(0, (trace.size + CANDIDATES_PER_TASK - 1) / CANDIDATES_PER_TASK)
+            .parallel()
+            .map(range -> {
+               VisitedStates visitedStates = new VisitedStates(patrolMap.cellCount());
+               int loops = 0;
+               for (int i = range * CANDIDATES_PER_TASK, end = Math.min(trace.size, i + CANDIDATES_PER_TASK); i < end; i++) {
+                  boolean empty = grid[trace.cells[i] / cols][trace.cells[i] % cols] == DOT; // Check only empty cells
+                  if (empty && patrolMap.loopsWithObstacle(trace.cells[i], trace.previousCells[i], trace.directions[i],
+                        visitedStates)) {
+                     loops++;
+                  }
+               }
+               return loops;
+            })
+            .sum();
+   }
 
-         // Determine the next position based on the current direction.
-         int[] nextPosition = determineNextPosition(currentDirection, position);
+   /**
+    * Jump table over the lab: for every free cell and direction it stores the cell the guard stops at
+    * before the next obstacle, so each move teleports a whole segment instead of walking cell by cell.
+    * Cells are numbered {@code row * cols + col}, directions follow up, right, down, left.
+    */
+   static class PatrolMap
+   {
+      static final int EXIT = -1;
+      private static final int[] ROW_STEP = { -1, 0, 1, 0 };
+      private static final int[] COL_STEP = { 0, 1, 0, -1 };
+
+      private final int rows;
+      private final int cols;
+      private final boolean[] blocked;
+      // jump[direction][cell] = stop cell, or EXIT when the guard walks off the map
+      private final int[][] jump = new int[4][];
 
-         // Check if the next position is out of bounds.
-         if (isOutOfBounds(grid, nextPosition)) {
-            break; // Stop if we move out of bounds.
+      PatrolMap(char[][] grid)
+      {
+         rows = grid.length;
+         cols = grid[0].length;
+         blocked = new boolean[rows * cols];
+         for (int row = 0; row < rows; row++) {
+            for (int col = 0; col < cols; col++) {
+               blocked[cellOf(row, col)] = grid[row][col] == BLOCK;
+            }
          }
+         for (int direction = 0; direction < 4; direction++) {
+            jump[direction] = buildJumpTable(direction);
+         }
+      }
 
-         // Check the contents of the next position.
-         char nextCell = grid[nextPosition[0]][nextPosition[1]];
-         if (nextCell == BLOCK) {
-            // Found a block; change direction.
-            currentDirection = nextDirectionMap.get(currentDirection);
-         } else {
-            // Move to the next position.
-            position = nextPosition;
+      // Sweeps against the direction so the cell ahead is always resolved first
+      private int[] buildJumpTable(int direction)
+      {
+         int[] table = new int[rows * cols];
+         int dRow = ROW_STEP[direction];
+         int dCol = COL_STEP[direction];
+         int rowStart = dRow > 0 ? rows - 1 : 0;
+         int colStart = dCol > 0 ? cols - 1 : 0;
+         int rowStep = dRow > 0 ? -1 : 1;
+         int colStep = dCol > 0 ? -1 : 1;
 
-            // Only count the move if the position hasn't been visited yet.
-            if (grid[position[0]][position[1]] != VISITED) {
-               moveCount++;
+         for (int i = 0, row = rowStart; i < rows; i++, row += rowStep) {
+            for (int j = 0, col = colStart; j < cols; j++, col += colStep) {
+               int cell = cellOf(row, col);
+               int nextRow = row + dRow;
+               int nextCol = col + dCol;
+               if (blocked[cell]) {
+                  table[cell] = EXIT; // never read, the guard cannot stand on an obstacle
+               } else if (nextRow < 0 || nextRow >= rows || nextCol < 0 || nextCol >= cols) {
+                  table[cell] = EXIT;
+               } else if (blocked[cellOf(nextRow, nextCol)]) {
+                  table[cell] = cell;
+               } else {
+                  table[cell] = table[cellOf(nextRow, nextCol)];
+               }
             }
          }
+         return table;
       }
 
-      return moveCount;
-   }
+      int cellOf(int row, int col)
+      {
+         return row * cols + col;
+      }
 
+      int cellCount()
+      {
+         return rows * cols;
+      }
 
-   public int countPossibleLoopToBeMade(char[][] grid, int[] startPosition, Character startDirection) {
-      int numRows = grid.length;
-      int numCols = grid[0].length;
-      int loopCounter = 0;
+      /**
+       * Returns where the guard stops when moving from the cell in the direction, taking an extra obstacle
+       * into account ({@code EXIT} for none). The extra obstacle is patched in with an O(1) check.
+       */
+      int nextStop(int cell, int direction, int extraObstacle)
+      {
+         int stop = jump[direction][cell];
+         if (extraObstacle == EXIT) {
+            return stop;
+         }
 
-      for (int i = 0; i < numRows; i++) {
-         for (int j = 0; j < numCols; j++) {
-            if (grid[i][j] == DOT) { // Check only empty cells
-               grid[i][j] = BLOCK; // Temporarily place an obstacle
-               if (doesCreateLoop(grid, startPosition, startDirection)) {
-                  loopCounter++;
+         int row = cell / cols;
+         int col = cell % cols;
+         int obstacleRow = extraObstacle / cols;
+         int obstacleCol = extraObstacle % cols;
+         int distance;
+         if (ROW_STEP[direction] == 0) {
+            distance = obstacleRow == row ? (obstacleCol - col) * COL_STEP[direction] : -1;
+         } else {
+            distance = obstacleCol == col ? (obstacleRow - row) * ROW_STEP[direction] : -1;
+         }
+         if (distance <= 0) {
+            return stop; // Not ahead of the guard
+         }
+
+         int stopDistance = stop == EXIT ? Integer.MAX_VALUE : Math.abs(stop / cols - row) + Math.abs(stop % cols - col);
+         if (distance <= stopDistance) {
+            return extraObstacle - ROW_STEP[direction] * cols - COL_STEP[direction];
+         }
+         return stop;
+      }
+
+      /**
+       * Follows the patrol without extra obstacles and records every cell the first time the guard enters it,
+       * together with the cell and direction the guard came from. The start cell is not part of the trace.
+       */
+      PatrolTrace tracePatrol(int startCell, int startDirection)
+      {
+         boolean[] visited = new boolean[rows * cols];
+         visited[startCell] = true;
+         PatrolTrace trace = new PatrolTrace();
+         int cell = startCell;
+         int direction = startDirection;
+         int step = ROW_STEP[direction] * cols + COL_STEP[direction];
+
+         while (true) {
+            int stop = jump[direction][cell];
+            int remaining = stop == EXIT ? stepsToEdge(cell, direction) : Math.abs(stop - cell) / Math.abs(step);
+            for (int i = 0; i < remaining; i++, cell += step) {
+               int next = cell + step;
+               if (!visited[next]) {
+                  visited[next] = true;
+                  trace.add(next, cell, direction);
                }
-               grid[i][j] = DOT; // Remove the obstacle
             }
+            if (stop == EXIT) {
+               return trace;
+            }
+            cell = stop;
+            direction = (direction + 1) & 3;
+            step = ROW_STEP[direction] * cols + COL_STEP[direction];
+         }
+      }
+
+      private int stepsToEdge(int cell, int direction)
+      {
+         int row = cell / cols;
+         int col = cell % cols;
+         return switch (direction) {
+            case 0 -> row;
+            case 1 -> cols - 1 - col;
+            case 2 -> rows - 1 - row;
+            default -> col;
+         };
+      }
+
+      /**
+       * Simulates the patrol with one extra obstacle and reports whether the guard ends up in a loop.
+       * Only the stops in front of obstacles are recorded, a loop always revisits one of them.
+       */
+      boolean loopsWithObstacle(int obstacleCell, int startCell, int startDirection, VisitedStates visitedStates)
+      {
+         visitedStates.clear();
+         int cell = startCell;
+         int direction = startDirection;
+
+         while (true) {
+            int stop = nextStop(cell, direction, obstacleCell);
+            if (stop == EXIT) {
+               return false;
+            }
+            if (!visitedStates.add(stop * 4 + direction)) {
+               return true;
+            }
+            cell = stop;
+            direction = (direction + 1) & 3;
          }
       }
-      return loopCounter;
    }
 
-   private boolean isOutOfBounds(char[][] grid, int[] position)
+   /**
+    * First visits of the original patrol: {@code cells[i]} was entered from {@code previousCells[i]}
+    * while facing {@code directions[i]}.
+    */
+   static class PatrolTrace
    {
-      int numRows = grid.length;
-      int numCols = grid[0].length;
-      return position[0] < 0 || position[0] >= numRows || position[1] < 0 || position[1] >= numCols;
-   }
+      int size;
+      int[] cells = new int[256];
+      int[] previousCells = new int[256];
+      int[] directions = new int[256];
 
-   private int[] determineNextPosition(Character currentCharacter, int[] position) {
-      switch (currentCharacter) {
-         case '^': // Facing up
-            return new int[]{position[0] - 1, position[1]};
-         case 'v': // Facing down
-            return new int[]{position[0] + 1, position[1]};
-         case '>': // Facing right
-            return new int[]{position[0], position[1] + 1};
-         case '<': // Facing left
-            return new int[]{position[0], position[1] - 1};
-         default:
-            throw new IllegalArgumentException("Invalid direction character: " + currentCharacter);
+      void add(int cell, int previousCell, int direction)
+      {
+         if (size == cells.length) {
+            cells = Arrays.copyOf(cells, size * 2);
+            previousCells = Arrays.copyOf(previousCells, size * 2);
+            directions = Arrays.copyOf(directions, size * 2);
+         }
+         cells[size] = cell;
+         previousCells[size] = previousCell;
+         directions[size] = direction;
+         size++;
       }
    }
 
-   private boolean doesCreateLoop(char[][] grid, int[] startPosition, Character startDirection) {
-      Set<String> visitedStates = new HashSet<>();
-      int[] position = startPosition.clone();
-      Character currentCharacter = startDirection;
+   /**
+    * Bitset of (stop cell, direction) states that only clears the words it touched, so it can be reused
+    * across simulations without paying for the whole grid each time.
+    */
+   static class VisitedStates
+   {
+      private final long[] bits;
+      private int[] touchedWords = new int[64];
+      private int touchedCount;
 
-      while (true) {
-         String state = position[0] + "," + position[1] + "," + currentCharacter;
-         if (visitedStates.contains(state)) {
-            return true; // Loop detected
-         }
-         visitedStates.add(state);
+      VisitedStates(int cellCount)
+      {
+         bits = new long[(cellCount * 4 + 63) >>> 6];
+      }
 
-         int[] nextPosition = determineNextPosition(currentCharacter, position);
+      // Returns false when the state was already present
+      boolean add(int state)
+      {
+         int word = state >>> 6;
+         long mask = 1L << state;
+         if ((bits[word] & mask) != 0) {
+            return false;
+         }
+         if (bits[word] == 0) {
+            if (touchedCount == touchedWords.length) {
+               touchedWords = Arrays.copyOf(touchedWords, touchedCount * 2);
+            }
+            touchedWords[touchedCount++] = word;
+         }
+         bits[word] |= mask;
+         return true;
+      }
 
-         if (isOutOfBounds(grid, nextPosition)) {
-            break; // Out of bounds, no loop
-         } else if (grid[nextPosition[0]][nextPosition[1]] == BLOCK) {
-            // Found a block, change direction
-            currentCharacter = nextDirectionMap.get(currentCharacter);
-         } else {
-            // Move to the next position
-            position = nextPosition;
+      void clear()
+      {
+         for (int i = 0; i < touchedCount; i++) {
+            bits[touchedWords[i]] = 0;
          }
+         touchedCount = 0;
       }
-      return false;
    }
-
 }
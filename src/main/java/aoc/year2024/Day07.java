@@ -1,14 +1,17 @@
 package aoc.year2024;
 
-import java.util.Arrays;
-import java.util.HashSet;
+import aoc.Arithmetic;
 import java.util.List;
-import java.util.Set;
+import java.util.Objects;
+import java.util.function.LongPredicate;
 
 
 public class Day07
 {
    private final List<String> input;
+   // Operand values are never negative, so negative results are free to use as markers
+   static final long NONE = -1;
+   static final long AMBIGUOUS = -2;
 
    public Day07(List<String> input)
    {
@@ -22,71 +25,251 @@ public class Day07
          throw new IllegalArgumentException("Input list cannot be null or empty");
       }
 
-      long sumOfCorrectLinesTwoOperations = calculateSumOfCorrectLines(input, false);
+      List<Equation> equations = input.parallelStream()
+            .map(Equation::parse)
+            .filter(Objects::nonNull)
+            .toList();
+
+      long sumOfCorrectLinesTwoOperations = calculateSumOfCorrectLines(equations,
+            List.of(StandardOperator.ADD, StandardOperator.MULTIPLY));
       System.out.println("Part 1: " + sumOfCorrectLinesTwoOperations);
 
-      long sumOfCorrectLinesThreeOperations = calculateSumOfCorrectLines(input, true);
+      long sumOfCorrectLinesThreeOperations = calculateSumOfCorrectLines(equations,
+            List.of(StandardOperator.ADD, StandardOperator.MULTIPLY, StandardOperator.CONCATENATE));
       System.out.println("Part 2: " + sumOfCorrectLinesThreeOperations);
    }
 
-   private long calculateSumOfCorrectLines(List<String> input, boolean isThirdOperationUnlocked)
+   /**
+    * Sums the targets of the equations that can be made true with the given operators. Equations are
+    * independent, so they are checked on a parallel stream and the per-thread sums are reduced at the end.
+    */
+   static long calculateSumOfCorrectLines(List<Equation> equations, List<? extends Operator> operators)
    {
-      return input.stream()
-            .map(line -> line.split(":"))
-            .filter(parts -> parts.length == 2)
-            .mapToLong(parts -> {
-               long key = Long.parseLong(parts[0]);
-               List<Long> values = Arrays.stream(parts[1].trim().split(" "))
-                     .map(Long::parseLong)
-                     .toList();
-
-               Set<Long> possibleResults = calculateResults(values, key, isThirdOperationUnlocked);
-               return possibleResults.contains(key) ? key : 0L;
-            })
+      Operator[] operatorArray = operators.toArray(new Operator[0]);
+      return equations.parallelStream()
+            .filter(equation -> equation.isSolvable(operatorArray))
+            .mapToLong(equation -> equation.target)
             .sum();
    }
 
-   private static Set<Long> calculateResults(List<Long> numbers, Long targetKey, boolean isThirdOperationUnlocked) {
-      if (numbers == null || numbers.size() < 2) {
-         throw new IllegalArgumentException("List must contain at least two numbers.");
-      }
+   /**
+    * A binary operator that is evaluated left to right. Besides applying it, the backward search needs to
+    * undo it: given the result and the right operand, recover the left operand.
+    */
+   interface Operator
+   {
+      /**
+       * @return the result, or {@link Day07#NONE} when it does not fit in a long
+       */
+      long apply(long left, long right);
 
-      Set<Long> results = new HashSet<>();
-      generateResults(numbers, 0, (long) numbers.get(0), results, targetKey, isThirdOperationUnlocked);
-      return results;
+      /**
+       * @return the only left operand for which {@code apply(left, right) == result}, {@link Day07#NONE} if there is
+       * no such operand, or {@link Day07#AMBIGUOUS} if more than one operand works
+       */
+      long undo(long result, long right);
    }
 
-   private static void generateResults(List<Long> numbers, int index, long currentResult, Set<Long> results, Long targetKey, boolean isThirdOperationUnlocked) {
-      if (index == numbers.size() - 1 || targetKey.compareTo(currentResult) < 0) {
-         results.add(currentResult);
-         return;
-      }
+   enum StandardOperator implements Operator
+   {
+      ADD {
+         @Override
+         public long apply(long left, long right) {
+            long result = left + right;
+            return result < 0 ? NONE : result;
+         }
+
+         @Override
+         public long undo(long result, long right) {
+            // Subtraction has to stay non-negative
+            return result >= right ? result - right : NONE;
+         }
+      },
+      MULTIPLY {
+         @Override
+         public long apply(long left, long right) {
+            long high = Math.multiplyHigh(left, right);
+            long result = left * right;
+            return high != 0 || result < 0 ? NONE : result;
+         }
 
-      long nextNumber = numbers.get(index + 1);
+         @Override
+         public long undo(long result, long right) {
+            if (right == 0) {
+               return result == 0 ? AMBIGUOUS : NONE; // Anything times zero is zero
+            }
+            // Division has to be exact
+            return result % right == 0 ? result / right : NONE;
+         }
+      },
+      CONCATENATE {
+         @Override
+         public long apply(long left, long right) {
+            long shift = powerOfTenAbove(right);
+            if (shift == 0 || left > (Long.MAX_VALUE - right) / shift) {
+               return NONE;
+            }
+            return left * shift + right;
+         }
 
-      // Perform addition
-      generateResults(numbers, index + 1, currentResult + nextNumber, results, targetKey, isThirdOperationUnlocked);
+         @Override
+         public long undo(long result, long right) {
+            // The right operand has to be a decimal suffix of the result
+            long shift = powerOfTenAbove(right);
+            return shift != 0 && result % shift == right ? result / shift : NONE;
+         }
+      },
+      XOR {
+         @Override
+         public long apply(long left, long right) {
+            return left ^ right;
+         }
 
-      // Perform multiplication
-      generateResults(numbers, index + 1, currentResult * nextNumber, results, targetKey, isThirdOperationUnlocked);
+         @Override
+         public long undo(long result, long right) {
+            return result ^ right;
+         }
+      },
+      MIN {
+         @Override
+         public long apply(long left, long right) {
+            return Math.min(left, right);
+         }
 
-      // Perform concatenation if available
-      if(isThirdOperationUnlocked){
-         generateResults(numbers, index + 1, concatenateOperation(currentResult, nextNumber), results, targetKey, isThirdOperationUnlocked);
+         @Override
+         public long undo(long result, long right) {
+            if (result < right) {
+               return result;
+            }
+            return result == right ? AMBIGUOUS : NONE; // Any left operand >= right gives right
+         }
       }
    }
 
-   private static long concatenateOperation(long firstNumber, long nextNumber)
+   // Returns 10^digits(number), or 0 when that no longer fits in a long
+   private static long powerOfTenAbove(long number)
    {
-      // Count the number of digits in nextNumber
-      long nextNumberCopy = nextNumber;
-      int digits = 0;
-      while (nextNumberCopy > 0) {
-         nextNumberCopy /= 10;
-         digits++;
+      int digits = Arithmetic.digitCount(number);
+      return digits <= Arithmetic.MAX_POWER_OF_TEN ? Arithmetic.powerOfTen(digits) : 0;
+   }
+
+   /**
+    * A calibration equation parsed into primitives: the test value and its operands.
+    */
+   static class Equation
+   {
+      final long target;
+      final long[] operands;
+
+      Equation(long target, long[] operands)
+      {
+         if (operands.length < 2) {
+            throw new IllegalArgumentException("List must contain at least two numbers.");
+         }
+         this.target = target;
+         this.operands = operands;
       }
 
-      // Shift firstNumber by the number of digits and add nextNumber
-      return firstNumber * (long)Math.pow(10, digits) + nextNumber;
+      /**
+       * Parses {@code "target: a b c"} without splitting into strings.
+       *
+       * @return the equation, or null for a line without a ':' separator
+       */
+      static Equation parse(String line)
+      {
+         int colon = line.indexOf(':');
+         if (colon < 0) {
+            return null;
+         }
+
+         long target = parseNumber(line, 0, colon);
+
+         int count = 0;
+         boolean inNumber = false;
+         for (int i = colon + 1; i < line.length(); i++) {
+            boolean token = line.charAt(i) != ' ';
+            if (token && !inNumber) {
+               count++;
+            }
+            inNumber = token;
+         }
+
+         long[] operands = new long[count];
+         int index = 0;
+         int i = colon + 1;
+         while (index < count) {
+            while (line.charAt(i) == ' ') {
+               i++;
+            }
+            int start = i;
+            while (i < line.length() && line.charAt(i) != ' ') {
+               i++;
+            }
+            operands[index++] = parseNumber(line, start, i);
+         }
+         return new Equation(target, operands);
+      }
+
+      private static long parseNumber(String line, int from, int to)
+      {
+         if (from == to) {
+            throw new IllegalArgumentException("Missing number in line: '" + line + "'");
+         }
+         long value = 0;
+         for (int i = from; i < to; i++) {
+            int digit = line.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+               throw new IllegalArgumentException("Invalid number in line: '" + line + "'");
+            }
+            value = Math.addExact(Math.multiplyExact(value, 10), digit);
+         }
+         return value;
+      }
+
+      boolean isSolvable(Operator[] operators)
+      {
+         return solveBackwards(operands.length - 1, target, operators);
+      }
+
+      /**
+       * Works from the target back to the first operand, peeling the operands off the right. An operator only
+       * applies when it can be undone exactly, so most branches die immediately, and the search stops at the
+       * first solution. When an operator cannot name a single left operand (e.g. x * 0), the prefix is
+       * enumerated forwards instead.
+       */
+      private boolean solveBackwards(int index, long target, Operator[] operators)
+      {
+         long number = operands[index];
+         if (index == 0) {
+            return target == number;
+         }
+
+         for (Operator operator : operators) {
+            long left = operator.undo(target, number);
+            if (left == AMBIGUOUS) {
+               if (anyPrefixValue(0, index - 1, operands[0], operators, value -> operator.apply(value, number) == target)) {
+                  return true;
+               }
+            } else if (left != NONE && solveBackwards(index - 1, left, operators)) {
+               return true;
+            }
+         }
+         return false;
+      }
+
+      // Evaluates operands[0..lastIndex] forwards under every operator combination
+      private boolean anyPrefixValue(int index, int lastIndex, long value, Operator[] operators, LongPredicate test)
+      {
+         if (index == lastIndex) {
+            return test.test(value);
+         }
+         for (Operator operator : operators) {
+            long next = operator.apply(value, operands[index + 1]);
+            if (next != NONE && anyPrefixValue(index + 1, lastIndex, next, operators, test)) {
+               return true;
+            }
+         }
+         return false;
+      }
    }
 }
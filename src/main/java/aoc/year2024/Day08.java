@@ -1,18 +1,18 @@
 package aoc.year2024;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 
 
 public class Day08
 {
    public static final char DOT = '.';
    private final List<String> input;
-   private final Map<Character, List<int[]>> antennaPositionMap = new HashMap<>();
+   private final Map<Character, AntennaGroup> antennaPositionMap = new HashMap<>();
+   private int numRows;
+   private int numCols;
 
 
    public Day08(List<String> input)
@@ -27,131 +27,174 @@ public class Day08
          throw new IllegalArgumentException("Input list cannot be null or empty");
       }
 
-      char[][] grid = makeTheGrid(input);
-      makeTheAntennaMap(grid);
+      makeTheAntennaMap(input);
 
-      int nrOfUniquePossibleAntinodes = countPossibleUniqueAntinodes(grid, antennaPositionMap);
+      int nrOfUniquePossibleAntinodes = countAntinodes(AntinodeMode.PAIR);
 
       System.out.println("Part 1: " + nrOfUniquePossibleAntinodes);
 
-      int nrOfUniqueHarmonicAntinotes = countPossibleUniqueHarmonicAntinodes(grid, antennaPositionMap);
+      int nrOfUniqueHarmonicAntinotes = countAntinodes(AntinodeMode.HARMONIC);
       System.out.println("Part 2: " +nrOfUniqueHarmonicAntinotes);
    }
 
-   private char[][] makeTheGrid(List<String> gridData)
+   private void makeTheAntennaMap(List<String> gridData)
    {
-      int rows = gridData.size();
-      int cols = gridData.get(0).length();
-      char[][] gridArray = new char[rows][cols];
-      for (int i = 0; i < rows; i++) {
-         gridArray[i] = gridData.get(i).toCharArray();
-      }
-      return gridArray;
-   }
-
-   private void makeTheAntennaMap(char[][] grid)
-   {
-      int numRows = grid.length;
-      int numCols = grid[0].length;
+      numRows = gridData.size();
+      numCols = gridData.get(0).length();
 
       for (int i = 0; i < numRows; i++) {
-         for (int j = 0; j < numCols; j++) {
-            int[] position = new int[]{i, j};
-            if (grid[i][j] != DOT) // Check non-empty cells
+         String row = gridData.get(i);
+         for (int j = 0; j < row.length(); j++) {
+            char cell = row.charAt(j);
+            if (cell != DOT) // Check non-empty cells
             {
-               antennaPositionMap.putIfAbsent(grid[i][j], new ArrayList<>());
-               antennaPositionMap.get(grid[i][j]).add(position);
+               antennaPositionMap.computeIfAbsent(cell, frequency -> new AntennaGroup()).add(i, j);
             }
          }
       }
    }
 
-   private int countPossibleUniqueAntinodes(char[][] grid, Map<Character, List<int[]>> posMap)
+   /**
+    * Frequencies are independent, so they are processed in parallel. Every task marks into its own bitset
+    * and the bitsets are OR-merged at the end.
+    */
+   private int countAntinodes(AntinodeMode mode)
    {
-      Set<String> antinodePositionSet = new HashSet<>();
+      return antennaPositionMap.values().parallelStream()
+            .collect(() -> new AntinodeMap(numRows, numCols),
+                  (antinodeMap, group) -> antinodeMap.markGroup(group, mode),
+                  AntinodeMap::or)
+            .count();
+   }
 
-      int numRows = grid.length;
-      int numCols = grid[0].length;
+   /**
+    * Positions of all antennas sharing one frequency, kept in primitive coordinate arrays.
+    */
+   static class AntennaGroup
+   {
+      int size;
+      int[] rows = new int[8];
+      int[] cols = new int[8];
 
-      for(Map.Entry<Character, List<int[]>> entry : posMap.entrySet())
+      void add(int row, int col)
       {
-         List<int[]> positions = entry.getValue();
-
-         if(positions.size() < 2)
-         {
-            continue;
-         }
-
-         for (int k = 0; k < positions.size(); k++) {
-            for (int l = 0; l < positions.size(); l++)
-            {
-               int[] pos1 = positions.get(k);
-               int[] pos2 = positions.get(l);
-               if (k != l)
-               {
-                  int antinodeRow =  pos2[0] + (pos2[0] - pos1[0]);
-                  int antinodeCol =  pos2[1] + (pos2[1] - pos1[1]);
-                  if(isValidPosition(antinodeRow, antinodeCol, numRows, numCols))
-                  {
-                     antinodePositionSet.add(createPositionKey(antinodeRow, antinodeCol));
-                  }
-               }
-            }
+         if (size == rows.length) {
+            rows = Arrays.copyOf(rows, size * 2);
+            cols = Arrays.copyOf(cols, size * 2);
          }
+         rows[size] = row;
+         cols[size] = col;
+         size++;
       }
+   }
 
-      return antinodePositionSet.size();
+   enum AntinodeMode
+   {
+      // One antinode on each side, as far from the nearer antenna as the antennas are apart
+      PAIR,
+      // Every multiple of the antenna offset on the line, antennas included
+      HARMONIC,
+      // Every lattice point on the line, the offset is reduced by its gcd first
+      COLLINEAR
    }
 
-   private int countPossibleUniqueHarmonicAntinodes(char[][] grid, Map<Character, List<int[]>> posMap)
+   /**
+    * Antinode positions kept as a bitset over the grid, bit {@code row * cols + col}.
+    */
+   static class AntinodeMap
    {
-      Set<String> antinodePositionSet = new HashSet<>();
+      private final int rows;
+      private final int cols;
+      private final long[] bits;
 
-      int numRows = grid.length;
-      int numCols = grid[0].length;
+      AntinodeMap(int rows, int cols)
+      {
+         this.rows = rows;
+         this.cols = cols;
+         this.bits = new long[(int) (((long) rows * cols + 63) >>> 6)];
+      }
 
-      for(Map.Entry<Character, List<int[]>> entry : posMap.entrySet())
+      void markGroup(AntennaGroup group, AntinodeMode mode)
       {
-         List<int[]> positions = entry.getValue();
+         // Each unordered pair is visited once, markPair covers both directions
+         for (int k = 0; k < group.size; k++) {
+            for (int l = k + 1; l < group.size; l++) {
+               markPair(group.rows[k], group.cols[k], group.rows[l], group.cols[l], mode);
+            }
+         }
+      }
 
-         if(positions.size() < 2)
-         {
-            continue;
+      void or(AntinodeMap other)
+      {
+         for (int i = 0; i < bits.length; i++) {
+            bits[i] |= other.bits[i];
          }
+      }
 
-         for (int k = 0; k < positions.size(); k++) {
-            for (int l = 0; l < positions.size(); l++)
-            {
-               if (k != l)
-               {
-                  int[] pos1 = positions.get(k);
-                  int[] pos2 = positions.get(l);
-                  int dx = (pos2[0] - pos1[0]);
-                  int dy = (pos2[1] - pos1[1]);
-
-                  // Start with the second position
-                  int currentRow = pos2[0];
-                  int currentCol = pos2[1];
-                  while (isValidPosition(currentRow, currentCol, numRows, numCols)) {
-                     // Add the current position to the set
-                     antinodePositionSet.add(createPositionKey(currentRow, currentCol));
-                     // Move to the next position in the harmonic sequence
-                     currentRow += dx;
-                     currentCol += dy;
-                  }
-               }
+      /**
+       * Marks the antinodes created by two antennas of the same frequency, in both directions.
+       */
+      void markPair(int row1, int col1, int row2, int col2, AntinodeMode mode)
+      {
+         int dRow = row2 - row1;
+         int dCol = col2 - col1;
+
+         switch (mode)
+         {
+            case PAIR -> {
+               mark(row2 + dRow, col2 + dCol);
+               mark(row1 - dRow, col1 - dCol);
+            }
+            case HARMONIC -> {
+               markRay(row2, col2, dRow, dCol);
+               markRay(row1, col1, -dRow, -dCol);
+            }
+            case COLLINEAR -> {
+               int gcd = gcd(Math.abs(dRow), Math.abs(dCol));
+               dRow /= gcd;
+               dCol /= gcd;
+               markRay(row1, col1, dRow, dCol);
+               markRay(row1 - dRow, col1 - dCol, -dRow, -dCol);
             }
          }
       }
 
-      return antinodePositionSet.size();
-   }
+      // Marks the start and every further step while it stays on the grid
+      private void markRay(int row, int col, int dRow, int dCol)
+      {
+         while (mark(row, col)) {
+            row += dRow;
+            col += dCol;
+         }
+      }
 
-   private boolean isValidPosition(int row, int col, int numRows, int numCols) {
-      return row >= 0 && row < numRows && col >= 0 && col < numCols;
-   }
+      private boolean mark(int row, int col)
+      {
+         if (row < 0 || row >= rows || col < 0 || col >= cols) {
+            return false;
+         }
+         int bit = row * cols + col;
+         bits[bit >>> 6] |= 1L << bit;
+         return true;
+      }
+
+      int count()
+      {
+         int count = 0;
+         for (long word : bits) {
+            count += Long.bitCount(word);
+         }
+         return count;
+      }
 
-   private String createPositionKey(int row, int col) {
-      return row + "," + col;
+      private static int gcd(int a, int b)
+      {
+         while (b != 0) {
+            int t = a % b;
+            a = b;
+            b = t;
+         }
+         return a;
+      }
    }
 }
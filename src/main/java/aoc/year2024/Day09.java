@@ -1,8 +1,7 @@
 package aoc.year2024;
 
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.List;
-import java.util.TreeMap;
 
 
 public class Day09
@@ -26,209 +25,165 @@ public class Day09
       solvePartTwo(diskInput);
    }
 
+   /**
+    * Compacts single blocks without materialising them: a front pointer walks the disk map and fills every gap
+    * from a back pointer that tracks how much of the last unmoved file is left. Each run contributes its
+    * checksum as an arithmetic series, so only a handful of counters are needed besides the disk map itself.
+    */
    private void solvePartOne(String diskInput)
    {
-      final int[] sizeAndEmptyBlocks = getSizeAndEmptyBlocks(diskInput);
-      final int[] blocks = buildBlocks(diskInput, sizeAndEmptyBlocks[0]);
-
-      moveBlocks(sizeAndEmptyBlocks[1], blocks);
-      final long checksum = calculateChecksum(blocks);
-      System.out.println("Part 1: " + checksum);
-   }
+      int back = diskInput.length() % 2 == 0 ? diskInput.length() - 2 : diskInput.length() - 1;
+      int backRemaining = getIntValue(diskInput, back);
+      long position = 0;
+      long checksum = 0;
 
-   private int[] getSizeAndEmptyBlocks(final String diskInput) {
-      int size = 0;
-      int nrEmptyBlocks = 0;
+      for (int front = 0; front <= back; front++) {
+         if (front % 2 == 0) {
+            // A file stays in place, unless the back pointer already moved part of it
+            final int size = front == back ? backRemaining : getIntValue(diskInput, front);
+            checksum += fileChecksum(front / 2, position, size);
+            position += size;
+            continue;
+         }
 
-      for (int i = 0; i < diskInput.length(); i++) {
-         int current = getIntValue(diskInput, i);
-         size += current;
-         if (i % 2 != 0) {
-            nrEmptyBlocks += current;
+         int gap = getIntValue(diskInput, front);
+         while (gap > 0 && back > front) {
+            final int moved = Math.min(gap, backRemaining);
+            checksum += fileChecksum(back / 2, position, moved);
+            position += moved;
+            gap -= moved;
+            backRemaining -= moved;
+            if (backRemaining == 0) {
+               back -= 2;
+               backRemaining = back > front ? getIntValue(diskInput, back) : 0;
+            }
          }
       }
 
-      return new int[]{size, nrEmptyBlocks};
+      System.out.println("Part 1: " + checksum);
    }
 
-   private int[] buildBlocks(final String diskInput, final int size) {
-      final int[] blocks = new int[size];
-      int processed = 0;
-      int currentNumber = 0;
+   /**
+    * Compacts whole files without expanding the disk: free gaps are indexed by length in one min-heap of start
+    * offsets per length, so the leftmost gap that fits is the smallest head among the heaps for lengths
+    * {@code >= size}, found in O(log n). The checksum is summed per file from (fileId, start, length).
+    * <p>
+    * Space freed by a moved file is never reused: it lies right of every file that is still to be moved.
+    */
+   private void solvePartTwo(String inputDisk)
+   {
+      final int fileCount = (inputDisk.length() + 1) / 2;
+      final long[] fileStarts = new long[fileCount];
+      final int[] fileSizes = new int[fileCount];
+      final LongMinHeap[] gapsByLength = new LongMinHeap[10];
+      for (int length = 1; length < gapsByLength.length; length++) {
+         gapsByLength[length] = new LongMinHeap();
+      }
 
-      for (int i = 0; i < diskInput.length(); i++) {
-         final int current = getIntValue(diskInput, i);
-         for (int j = 0; j < current; j++) {
-            blocks[processed + j] = (i % 2 == 0) ? currentNumber : -1;
-         }
-         processed += current;
+      long position = 0;
+      for (int i = 0; i < inputDisk.length(); i++) {
+         final int current = getIntValue(inputDisk, i);
          if (i % 2 == 0) {
-            currentNumber++;
+            fileStarts[i / 2] = position;
+            fileSizes[i / 2] = current;
+         } else if (current > 0) {
+            gapsByLength[current].push(position);
          }
+         position += current;
       }
 
-      return blocks;
-   }
-
-   private void moveBlocks(int nrEmptyBlocks, int[] blocks) {
-      int endIdx = blocks.length - 1; // Start at the last index of the array
-      int nrProcessed = 0; // Counter for the number of empty blocks processed
-
-      // Iterate through the blocks array
-      for (int j = 0; j < endIdx && nrProcessed < nrEmptyBlocks; j++) {
-         // Check if the current block is empty (-1)
-         if (blocks[j] == -1) {
-            // Find the last non-empty block by moving endIdx backward
-            while (blocks[endIdx] == -1) {
-               endIdx--; // Skip empty blocks from the end
-            }
-
-            // If endIdx has moved past the current index, stop the process
-            if (endIdx <= j) {
-               break;
-            }
-
-            // Move the last non-empty block to the current empty block position
-            blocks[j] = blocks[endIdx];
-            // Mark the last block's position as empty
-            blocks[endIdx] = -1;
-
-            // Update endIdx to point to the next non-empty block
-            endIdx--;
-            // Increment the counter for processed empty blocks
-            nrProcessed++;
+      long checksum = 0;
+      for (int fileIdx = fileCount - 1; fileIdx >= 0; fileIdx--) {
+         final int size = fileSizes[fileIdx];
+         long start = fileStarts[fileIdx];
+         if (size == 0) {
+            continue;
          }
-      }
-   }
 
-   private void solvePartTwo(String inputDisk)
-   {
-      final int[] sizeAndEmptyBlocks = getSizeAndEmptyBlocks(inputDisk);
-      final int[] blocks = buildBlocks(inputDisk, sizeAndEmptyBlocks[0]);
-      moveFiles(blocks, getFileSizes(inputDisk), getEmptyBlockSizes(blocks), getFileLocations(blocks),
-            getEmptySpaceLocations(blocks));
-
-      final long checksum = calculateChecksum(blocks);
-      System.out.println("Part 2: " + checksum);
-   }
-
-   private void moveFiles(final int[] blocks, final TreeMap<Integer, Integer> fileSizes,
-         TreeMap<Integer, Integer> emptyBlockSizes, final TreeMap<Integer, Integer> fileLocations,
-         TreeMap<Integer, Integer> emptySpaceLocations) {
-
-      // Iterate through all files in descending order of their indices
-      for (int fileIdx = fileSizes.firstKey(); fileIdx >= 0; fileIdx--) {
-         int emptySpaceIdx = 0; // Start with the first empty block
-         int currentFileSize = fileSizes.get(fileIdx); // Get the size of the current file
-         boolean foundSpace = false; // Flag to indicate if suitable space is found
-
-         // Find a suitable empty block that can fit the current file
-         while (emptySpaceIdx < emptyBlockSizes.size()) {
-            int currentEmptyBlockSize = emptyBlockSizes.get(emptySpaceIdx);
-            if (currentFileSize <= currentEmptyBlockSize) {
-               foundSpace = true; // Space found
-               break;
+         // Find the leftmost gap that fits and lies before the file
+         int gapLength = -1;
+         for (int length = size; length < gapsByLength.length; length++) {
+            if (!gapsByLength[length].isEmpty() && gapsByLength[length].peek() < start) {
+               start = gapsByLength[length].peek();
+               gapLength = length;
             }
-            emptySpaceIdx++; // Move to the next empty block
          }
 
-         // If a suitable space is found, proceed to move the file
-         if (foundSpace) {
-            int fileLocation = fileLocations.get(fileIdx); // Current location of the file
-            int emptySpaceLocation = emptySpaceLocations.get(emptySpaceIdx); // Location of the empty block
-
-            // Only move the file if the empty space is earlier in the array than its current location
-            if (emptySpaceLocation < fileLocation) {
-               // Clear the file's current location by marking its blocks as empty (-1)
-               for (int i = fileLocation; i < fileLocation + currentFileSize; i++) {
-                  blocks[i] = -1;
-               }
-
-               // Move the file to the new empty block
-               for (int i = emptySpaceLocation; i < emptySpaceLocation + currentFileSize; i++) {
-                  blocks[i] = fileIdx;
-               }
-
-               // Update empty block sizes and locations to reflect the new state of the blocks array
-               emptyBlockSizes = getEmptyBlockSizes(blocks);
-               emptySpaceLocations = getEmptySpaceLocations(blocks);
+         if (gapLength != -1) {
+            gapsByLength[gapLength].poll();
+            if (gapLength > size) {
+               gapsByLength[gapLength - size].push(start + size);
             }
          }
+         checksum += fileChecksum(fileIdx, start, size);
       }
-   }
 
+      System.out.println("Part 2: " + checksum);
+   }
 
-   private TreeMap<Integer, Integer> getFileSizes(final String diskInput)
+   // fileId * (start + (start + 1) + ... + (start + size - 1))
+   private static long fileChecksum(long fileId, long start, long size)
    {
-      final TreeMap<Integer, Integer> map = new TreeMap<>(Collections.reverseOrder());
-      for (int i = 0, nr = 0; i < diskInput.length(); i += 2) {
-         map.put(nr++, getIntValue(diskInput, i));
-      }
-
-      return map;
+      return fileId * (size * start + size * (size - 1) / 2);
    }
 
-   private TreeMap<Integer, Integer> getEmptyBlockSizes(final int[] blocks) {
-      TreeMap<Integer, Integer> map = new TreeMap<>();
-      int nr = 0;
+   /**
+    * Binary min-heap of primitive longs.
+    */
+   static class LongMinHeap
+   {
+      private long[] heap = new long[16];
+      private int size;
 
-      for (int i = 0; i < blocks.length; i++) {
-         if (blocks[i] == -1) {
-            int size = 0;
-            while (i < blocks.length && blocks[i] == -1) {
-               size++;
-               i++;
-            }
-            map.put(nr++, size);
-         }
+      boolean isEmpty()
+      {
+         return size == 0;
       }
 
-      return map;
-   }
-
-   private TreeMap<Integer, Integer> getFileLocations(final int[] blocks) {
-      TreeMap<Integer, Integer> map = new TreeMap<>(Collections.reverseOrder());
-      int nr = 0;
-
-      for (int i = 0; i < blocks.length; i++) {
-         if (blocks[i] != -1) {
-            map.put(nr++, i);
-            int current = blocks[i];
-            while (i < blocks.length && blocks[i] == current) {
-               i++;
-            }
-            i--; // Adjust to account for the extra increment in the while loop
-         }
+      long peek()
+      {
+         return heap[0];
       }
 
-      return map;
-   }
-
-   private TreeMap<Integer, Integer> getEmptySpaceLocations(final int[] blocks) {
-      TreeMap<Integer, Integer> map = new TreeMap<>();
-      int nr = 0;
-
-      for (int i = 0; i < blocks.length; i++) {
-         if (blocks[i] == -1) {
-            map.put(nr++, i);
-            while (i < blocks.length && blocks[i] == -1) {
-               i++;
+      void push(long value)
+      {
+         if (size == heap.length) {
+            heap = Arrays.copyOf(heap, size * 2);
+         }
+         int index = size++;
+         while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (heap[parent] <= value) {
+               break;
             }
-            i--; // Adjust to account for the extra increment in the while loop
+            heap[index] = heap[parent];
+            index = parent;
          }
+         heap[index] = value;
       }
 
-      return map;
-   }
-
-   private long calculateChecksum(final int[] blocks) {
-      long checksum = 0;
-      for (int i = 0; i < blocks.length; i++) {
-         if (blocks[i] != -1) {
-            checksum += (long) blocks[i] * i;
+      long poll()
+      {
+         long result = heap[0];
+         long last = heap[--size];
+         int index = 0;
+         while (true) {
+            int child = 2 * index + 1;
+            if (child >= size) {
+               break;
+            }
+            if (child + 1 < size && heap[child + 1] < heap[child]) {
+               child++;
+            }
+            if (heap[child] >= last) {
+               break;
+            }
+            heap[index] = heap[child];
+            index = child;
          }
+         heap[index] = last;
+         return result;
       }
-      return checksum;
    }
 
    private static int getIntValue(String diskInput, int i)
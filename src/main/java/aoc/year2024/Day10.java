@@ -1,8 +1,7 @@
 package aoc.year2024;
 
-import java.util.HashSet;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Set;
 
 
 public class Day10
@@ -21,94 +20,427 @@ public class Day10
          throw new IllegalArgumentException("Input list cannot be null or empty");
       }
 
-      int[][] grid = makeTheGrid(input);
+      TrailMap trailMap = new TrailMap(input);
 
-      int totalScore = traverseAndCalculateTotal(grid, true);
-      int totalRating = traverseAndCalculateTotal(grid, false);
+      long totalScore = trailMap.totalScore();
+      long totalRating = trailMap.totalRating();
 
       System.out.println("Part 1: " + totalScore);
       System.out.println("Part 2: " + totalRating);
    }
 
-   private int[][] makeTheGrid(List<String> gridData)
+   /**
+    * Topographic map on a flat {@code int[]} grid (cell {@code row * cols + col}) with the cells bucketed by height.
+    * Both answers come from dynamic programming over the height layers from 9 down to 0: a cell only needs
+    * the results of its neighbours one level higher.
+    */
+   static class TrailMap
    {
-      int rows = gridData.size();
-      int cols = gridData.get(0).length();
-      int[][] gridArray = new int[rows][cols];
-      for (int i = 0; i < rows; i++) {
-         gridArray[i] = gridData.get(i).chars()
-               .map(Character::getNumericValue)
-               .toArray();
-      }
-      return gridArray;
-   }
+      static final int TRAILHEAD = 0;
+      static final int SUMMIT = 9;
 
-   private int traverseAndCalculateTotal(int[][] grid, boolean useVisited)
-   {
-      int total = 0;
-
-      for (int row = 0; row < grid.length; row++) {
-         for (int col = 0; col < grid[row].length; col++) {
-            if (grid[row][col] == 0) {
-               if (useVisited) {
-                  total += calculateTotalForTrailHead(grid, new Integer[] { row, col }, 0, new HashSet<>());
-               } else {
-                  total += calculateTotalForTrailHead(grid, new Integer[] { row, col }, 0, null);
+      private final int rows;
+      private final int cols;
+      private final int[] heights;
+      // Cells ordered by height, layerStart[h] .. layerStart[h + 1] holds the cells of height h
+      private final int[] cellsByHeight;
+      private final int[] layerStart = new int[SUMMIT + 2];
+
+      TrailMap(List<String> gridData)
+      {
+         rows = gridData.size();
+         cols = gridData.get(0).length();
+         heights = new int[rows * cols];
+
+         int[] layerSize = new int[SUMMIT + 1];
+         for (int row = 0; row < rows; row++) {
+            String line = gridData.get(row);
+            for (int col = 0; col < cols; col++) {
+               // Anything that is not a digit (e.g. '.') is impassable
+               int height = Character.getNumericValue(line.charAt(col));
+               height = height >= TRAILHEAD && height <= SUMMIT ? height : -1;
+               heights[row * cols + col] = height;
+               if (height >= 0) {
+                  layerSize[height]++;
                }
             }
          }
+
+         for (int height = 0; height <= SUMMIT; height++) {
+            layerStart[height + 1] = layerStart[height] + layerSize[height];
+         }
+         cellsByHeight = new int[layerStart[SUMMIT + 1]];
+         int[] next = Arrays.copyOf(layerStart, SUMMIT + 1);
+         for (int cell = 0; cell < heights.length; cell++) {
+            if (heights[cell] >= 0) {
+               cellsByHeight[next[heights[cell]]++] = cell;
+            }
+         }
+      }
+
+      /**
+       * Sum over all trailheads of the number of distinct hiking trails, i.e. paths counted per cell.
+       */
+      long totalRating()
+      {
+         return sumOverTrailheads(pathsToSummits());
+      }
+
+      /**
+       * Sum over all trailheads of the number of distinct summits they reach.
+       */
+      long totalScore()
+      {
+         long total = 0;
+         int[] summitCounts = reachableSummitCounts();
+         for (int i = layerStart[TRAILHEAD]; i < layerStart[TRAILHEAD + 1]; i++) {
+            total += summitCounts[cellsByHeight[i]];
+         }
+         return total;
+      }
+
+      private long sumOverTrailheads(long[] values)
+      {
+         long total = 0;
+         for (int i = layerStart[TRAILHEAD]; i < layerStart[TRAILHEAD + 1]; i++) {
+            total += values[cellsByHeight[i]];
+         }
+         return total;
+      }
+
+      /**
+       * Number of hiking trails from each cell up to any summit, filled from height 9 down to 0.
+       */
+      long[] pathsToSummits()
+      {
+         long[] paths = new long[heights.length];
+         for (int i = layerStart[SUMMIT]; i < layerStart[SUMMIT + 1]; i++) {
+            paths[cellsByHeight[i]] = 1;
+         }
+
+         for (int height = SUMMIT - 1; height >= TRAILHEAD; height--) {
+            for (int i = layerStart[height]; i < layerStart[height + 1]; i++) {
+               int cell = cellsByHeight[i];
+               paths[cell] = sumNeighbours(heights, rows, cols, paths, cell, height + 1);
+            }
+         }
+         return paths;
+      }
+
+      /**
+       * Number of hiking trails from any trailhead up to each cell, filled from height 0 up to 9.
+       */
+      long[] pathsFromTrailheads()
+      {
+         long[] paths = new long[heights.length];
+         for (int i = layerStart[TRAILHEAD]; i < layerStart[TRAILHEAD + 1]; i++) {
+            paths[cellsByHeight[i]] = 1;
+         }
+
+         for (int height = TRAILHEAD + 1; height <= SUMMIT; height++) {
+            for (int i = layerStart[height]; i < layerStart[height + 1]; i++) {
+               int cell = cellsByHeight[i];
+               paths[cell] = sumNeighbours(heights, rows, cols, paths, cell, height - 1);
+            }
+         }
+         return paths;
+      }
+
+      /**
+       * Number of distinct summits reachable from each trailhead (zero for other cells). Reachable summits are
+       * tracked as a 64-bit set per cell, one sweep per block of 64 summits, so memory stays at one long per cell.
+       */
+      int[] reachableSummitCounts()
+      {
+         long[] reachable = new long[heights.length];
+         int[] counts = new int[heights.length];
+
+         for (int block = layerStart[SUMMIT]; block < layerStart[SUMMIT + 1]; block += 64) {
+            Arrays.fill(reachable, 0L);
+            int blockEnd = Math.min(block + 64, layerStart[SUMMIT + 1]);
+            for (int i = block; i < blockEnd; i++) {
+               reachable[cellsByHeight[i]] = 1L << (i - block);
+            }
+
+            for (int height = SUMMIT - 1; height >= TRAILHEAD; height--) {
+               for (int i = layerStart[height]; i < layerStart[height + 1]; i++) {
+                  int cell = cellsByHeight[i];
+                  long summits = 0;
+                  int row = cell / cols;
+                  int col = cell % cols;
+                  if (row > 0 && heights[cell - cols] == height + 1) summits |= reachable[cell - cols];
+                  if (row < rows - 1 && heights[cell + cols] == height + 1) summits |= reachable[cell + cols];
+                  if (col > 0 && heights[cell - 1] == height + 1) summits |= reachable[cell - 1];
+                  if (col < cols - 1 && heights[cell + 1] == height + 1) summits |= reachable[cell + 1];
+                  reachable[cell] = summits;
+                  if (height == TRAILHEAD) {
+                     counts[cell] += Long.bitCount(summits);
+                  }
+               }
+            }
+         }
+         return counts;
       }
-      return total;
    }
 
-   private int calculateTotalForTrailHead(int[][] grid, Integer[] currentPosition, int currentValue, Set<String> visited)
+   /**
+    * Topographic map that accepts single-cell height edits and keeps both answers up to date.
+    * <p>
+    * It keeps two path-count tables: trails from any trailhead up to a cell and trails from a cell up to any
+    * summit. Their product at a cell is the number of full trails through it, and both tables are linear in
+    * their neighbours, so an edit is applied as "remove the cell, then add it back with the new height". Each step
+    * pushes a delta layer by layer through the up-cone (trails from trailheads) and the down-cone (trails to
+    * summits) of the cell, so the work is proportional to the affected region.
+    * <p>
+    * Scores count distinct summits and do not decompose into deltas, so only the trailheads in the down-cone of
+    * the edited cell, before or after the edit, have their reachable summits recounted.
+    */
+   static class IncrementalTrailMap
    {
-      if (visited != null) {
-         visited.add(getPosKey(currentPosition));
+      private final int rows;
+      private final int cols;
+      private final int[] heights;
+      private final long[] pathsFromTrailheads;
+      private final long[] pathsToSummits;
+      private final int[] summitCounts;
+      private long totalRating;
+      private long totalScore;
+
+      // Scratch space reused between edits; stamps mark the cells seen by the current walk
+      private final long[] delta;
+      private final int[] visitStamp;
+      private int stamp;
+      private int[] queue = new int[64];
+      private int[] nextQueue = new int[64];
+      private int[] affectedTrailheads = new int[16];
+      private int affectedCount;
+
+      IncrementalTrailMap(List<String> gridData)
+      {
+         TrailMap trailMap = new TrailMap(gridData);
+         rows = trailMap.rows;
+         cols = trailMap.cols;
+         heights = trailMap.heights.clone();
+         pathsFromTrailheads = trailMap.pathsFromTrailheads();
+         pathsToSummits = trailMap.pathsToSummits();
+         summitCounts = trailMap.reachableSummitCounts();
+         totalRating = trailMap.totalRating();
+         totalScore = trailMap.totalScore();
+
+         delta = new long[heights.length];
+         visitStamp = new int[heights.length];
+      }
+
+      long totalRating()
+      {
+         return totalRating;
       }
 
-      if (currentValue == 9) {
-         return 1;
+      long totalScore()
+      {
+         return totalScore;
       }
-      int total = 0;
 
-      Integer[] nextPosition = new Integer[] { currentPosition[0], currentPosition[1] + 1 };
-      if (isValidMove(grid, nextPosition, currentValue, visited)) {
-         total += calculateTotalForTrailHead(grid, nextPosition, currentValue + 1, visited);
+      /**
+       * Changes the height of one cell, -1 makes it impassable.
+       */
+      void setHeight(int row, int col, int height)
+      {
+         if (row < 0 || row >= rows || col < 0 || col >= cols) {
+            throw new IllegalArgumentException("Cell (" + row + ", " + col + ") is outside the map");
+         }
+         if (height < -1 || height > TrailMap.SUMMIT) {
+            throw new IllegalArgumentException("Height must be between -1 and " + TrailMap.SUMMIT + ": " + height);
+         }
+
+         int cell = row * cols + col;
+         if (heights[cell] == height) {
+            return;
+         }
+
+         affectedCount = 0;
+         collectTrailheadsBelow(cell);
+
+         // 1) Remove the cell with its old height
+         if (heights[cell] >= 0) {
+            totalRating -= pathsFromTrailheads[cell] * pathsToSummits[cell];
+            propagate(cell, -pathsFromTrailheads[cell], pathsFromTrailheads, 1);
+            propagate(cell, -pathsToSummits[cell], pathsToSummits, -1);
+         }
+         pathsFromTrailheads[cell] = 0;
+         pathsToSummits[cell] = 0;
+         heights[cell] = height;
+
+         // 2) Add it back with the new height
+         if (height >= 0) {
+            pathsFromTrailheads[cell] = height == TrailMap.TRAILHEAD
+                  ? 1 : sumNeighbours(heights, rows, cols, pathsFromTrailheads, cell, height - 1);
+            pathsToSummits[cell] = height == TrailMap.SUMMIT
+                  ? 1 : sumNeighbours(heights, rows, cols, pathsToSummits, cell, height + 1);
+            totalRating += pathsFromTrailheads[cell] * pathsToSummits[cell];
+            propagate(cell, pathsFromTrailheads[cell], pathsFromTrailheads, 1);
+            propagate(cell, pathsToSummits[cell], pathsToSummits, -1);
+         }
+
+         // 3) Recount the summits of every trailhead that could see the change
+         collectTrailheadsBelow(cell);
+         for (int i = 0; i < affectedCount; i++) {
+            int trailhead = affectedTrailheads[i];
+            totalScore -= summitCounts[trailhead];
+            summitCounts[trailhead] = heights[trailhead] == TrailMap.TRAILHEAD ? countReachableSummits(trailhead) : 0;
+            totalScore += summitCounts[trailhead];
+         }
       }
 
-      nextPosition = new Integer[] { currentPosition[0] + 1, currentPosition[1] };
-      if (isValidMove(grid, nextPosition, currentValue, visited)) {
-         total += calculateTotalForTrailHead(grid, nextPosition, currentValue + 1, visited);
+      /**
+       * Carries a change of the cell's path count to the neighbours one level further in the given direction
+       * (+1 upwards, -1 downwards), and from there on layer by layer.
+       */
+      private void propagate(int cell, long cellDelta, long[] paths, int direction)
+      {
+         if (cellDelta == 0) {
+            return;
+         }
+         int size = 1;
+         queue[0] = cell;
+         delta[cell] = cellDelta;
+
+         for (int height = heights[cell] + direction; size > 0; height += direction) {
+            boolean inRange = height >= TrailMap.TRAILHEAD && height <= TrailMap.SUMMIT;
+            int nextSize = 0;
+            stamp++;
+            for (int i = 0; i < size; i++) {
+               int current = queue[i];
+               for (int k = 0; k < 4 && inRange; k++) {
+                  int next = neighbour(rows, cols, current, k);
+                  if (next < 0 || heights[next] != height) {
+                     continue;
+                  }
+                  if (visitStamp[next] != stamp) {
+                     visitStamp[next] = stamp;
+                     nextSize = pushNext(next, nextSize);
+                  }
+                  delta[next] += delta[current];
+               }
+               delta[current] = 0;
+            }
+            for (int i = 0; i < nextSize; i++) {
+               paths[nextQueue[i]] += delta[nextQueue[i]];
+            }
+
+            int[] swap = queue;
+            queue = nextQueue;
+            nextQueue = swap;
+            size = nextSize;
+         }
       }
 
-      nextPosition = new Integer[] { currentPosition[0], currentPosition[1] - 1 };
-      if (isValidMove(grid, nextPosition, currentValue, visited)) {
-         total += calculateTotalForTrailHead(grid, nextPosition, currentValue + 1, visited);
+      private int pushNext(int cell, int size)
+      {
+         if (size == nextQueue.length) {
+            nextQueue = Arrays.copyOf(nextQueue, size * 2);
+         }
+         nextQueue[size] = cell;
+         return size + 1;
       }
 
-      nextPosition = new Integer[] { currentPosition[0] - 1, currentPosition[1] };
-      if (isValidMove(grid, nextPosition, currentValue, visited)) {
-         total += calculateTotalForTrailHead(grid, nextPosition, currentValue + 1, visited);
+      // Adds the trailheads from which the cell can be reached to the affected list, skipping known ones
+      private void collectTrailheadsBelow(int cell)
+      {
+         if (heights[cell] < 0) {
+            return;
+         }
+         int walkStamp = ++stamp;
+         visitStamp[cell] = walkStamp;
+         int head = 0;
+         int tail = 0;
+         queue[tail++] = cell;
+
+         while (head < tail) {
+            int current = queue[head++];
+            if (heights[current] == TrailMap.TRAILHEAD) {
+               addAffected(current);
+               continue;
+            }
+            for (int k = 0; k < 4; k++) {
+               int next = neighbour(rows, cols, current, k);
+               if (next >= 0 && heights[next] == heights[current] - 1 && visitStamp[next] != walkStamp) {
+                  visitStamp[next] = walkStamp;
+                  if (tail == queue.length) {
+                     queue = Arrays.copyOf(queue, tail * 2);
+                  }
+                  queue[tail++] = next;
+               }
+            }
+         }
       }
 
-      return total;
-   }
+      private void addAffected(int trailhead)
+      {
+         for (int i = 0; i < affectedCount; i++) {
+            if (affectedTrailheads[i] == trailhead) {
+               return;
+            }
+         }
+         if (affectedCount == affectedTrailheads.length) {
+            affectedTrailheads = Arrays.copyOf(affectedTrailheads, affectedCount * 2);
+         }
+         affectedTrailheads[affectedCount++] = trailhead;
+      }
 
-   private boolean isValidMove(int[][] grid, Integer[] nextPosition, int currentValue, Set<String> visited)
-   {
-      return isInBounds(grid, nextPosition)
-            && grid[nextPosition[0]][nextPosition[1]] == currentValue + 1
-            && (visited == null || !visited.contains(getPosKey(nextPosition)));
+      private int countReachableSummits(int trailhead)
+      {
+         int walkStamp = ++stamp;
+         visitStamp[trailhead] = walkStamp;
+         int head = 0;
+         int tail = 0;
+         queue[tail++] = trailhead;
+         int summits = 0;
+
+         while (head < tail) {
+            int current = queue[head++];
+            if (heights[current] == TrailMap.SUMMIT) {
+               summits++;
+               continue;
+            }
+            for (int k = 0; k < 4; k++) {
+               int next = neighbour(rows, cols, current, k);
+               if (next >= 0 && heights[next] == heights[current] + 1 && visitStamp[next] != walkStamp) {
+                  visitStamp[next] = walkStamp;
+                  if (tail == queue.length) {
+                     queue = Arrays.copyOf(queue, tail * 2);
+                  }
+                  queue[tail++] = next;
+               }
+            }
+         }
+         return summits;
+      }
    }
 
-   private static boolean isInBounds(int[][] grid, Integer[] position) {
-      return position[0] >= 0 && position[0] < grid.length && position[1] >= 0 && position[1] < grid[0].length;
+   // Returns the k-th orthogonal neighbour of the cell (up, down, left, right), or -1 outside the map
+   private static int neighbour(int rows, int cols, int cell, int k)
+   {
+      int row = cell / cols;
+      int col = cell % cols;
+      return switch (k) {
+         case 0 -> row > 0 ? cell - cols : -1;
+         case 1 -> row < rows - 1 ? cell + cols : -1;
+         case 2 -> col > 0 ? cell - 1 : -1;
+         default -> col < cols - 1 ? cell + 1 : -1;
+      };
    }
 
-   private static String getPosKey(Integer[] currentPosition)
+   // Sums the values of the orthogonal neighbours that have the given height
+   private static long sumNeighbours(int[] heights, int rows, int cols, long[] values, int cell, int height)
    {
-      return currentPosition[0] + "-" + currentPosition[1];
+      long sum = 0;
+      for (int k = 0; k < 4; k++) {
+         int next = neighbour(rows, cols, cell, k);
+         if (next >= 0 && heights[next] == height) {
+            sum += values[next];
+         }
+      }
+      return sum;
    }
 }
-
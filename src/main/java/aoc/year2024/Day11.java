@@ -1,16 +1,15 @@
 package aoc.year2024;
 
+import aoc.Arithmetic;
+import java.math.BigInteger;
 import java.util.Arrays;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 
 public class Day11
 {
    private final List<String> input;
-   private final Map<String, Long> memo = new HashMap<>();
 
    public Day11(List<String> input)
    {
@@ -24,91 +23,420 @@ public class Day11
          throw new IllegalArgumentException("Input list cannot be null or empty");
       }
 
-      final List<Long> stoneNumbers = Arrays.stream(input.get(0).split(" "))
-            .map(Long::parseLong)
-            .collect(Collectors.toList());
+      final long[] stoneNumbers = Arrays.stream(input.get(0).trim().split("\\s+"))
+            .mapToLong(Long::parseLong)
+            .toArray();
 
-      long partOneResult = calculateTotalStoneSize(stoneNumbers, 25);
+      BlinkEngine blinkEngine = new BlinkEngine(0);
+      long partOneResult = blinkEngine.countStones(stoneNumbers, 25);
 
       System.out.println("Part 1: "+ partOneResult);
 
-      long partOTwoResult = calculateTotalStoneSize(stoneNumbers, 75);
+      long partOTwoResult = blinkEngine.countStones(stoneNumbers, 75);
       System.out.println("Part 2: " + partOTwoResult);
 
    }
 
-   private long calculateTotalStoneSize(List<Long> stoneNumbers, int blinks)
+   /**
+    * Blinks a whole generation at a time: stones with the same engraving behave the same, so only the
+    * distinct values are kept, each with how many stones carry it.
+    * <p>
+    * With a modulus the counts are kept modulo it, which allows any number of blinks. Without one (modulus 0)
+    * the counts are exact and an overflow fails loudly.
+    */
+   static class BlinkEngine
    {
-      long result = 0;
-      for (long stone : stoneNumbers) {
-         result += calculateSizeEvolutionForSingleStone(blinks, stone);
+      private final long modulus;
+
+      BlinkEngine(long modulus)
+      {
+         // Residues below 2^62 can be added without overflowing
+         if (modulus < 0 || modulus > 1L << 62) {
+            throw new IllegalArgumentException("Modulus must be between 0 and 2^62: " + modulus);
+         }
+         this.modulus = modulus;
+      }
+
+      long countStones(long[] stones, int blinks)
+      {
+         LongLongMap current = new LongLongMap();
+         LongLongMap next = new LongLongMap();
+         for (long stone : stones) {
+            if (stone < 0) {
+               throw new IllegalArgumentException("Stone numbers cannot be negative: " + stone);
+            }
+            current.add(stone, 1, modulus);
+         }
+
+         for (int blink = 0; blink < blinks; blink++) {
+            next.clear();
+            for (int slot = 0; slot < current.capacity(); slot++) {
+               if (!current.isUsed(slot)) {
+                  continue;
+               }
+               long stone = current.keyAt(slot);
+               long count = current.valueAt(slot);
+
+               if (stone == 0) {
+                  next.add(1, count, modulus);
+                  continue;
+               }
+               int digits = Arithmetic.digitCount(stone);
+               if (digits % 2 == 0) {
+                  long half = Arithmetic.powerOfTen(digits / 2);
+                  next.add(stone / half, count, modulus);
+                  next.add(stone % half, count, modulus);
+               } else {
+                  next.add(Math.multiplyExact(stone, 2024L), count, modulus);
+               }
+            }
+
+            LongLongMap swap = current;
+            current = next;
+            next = swap;
+         }
+
+         long total = 0;
+         for (int slot = 0; slot < current.capacity(); slot++) {
+            if (current.isUsed(slot)) {
+               total = modulus == 0 ? Math.addExact(total, current.valueAt(slot)) : (total + current.valueAt(slot)) % modulus;
+            }
+         }
+         return total;
       }
-      return result;
    }
 
-   private long calculateSizeEvolutionForSingleStone(int blinks, long stone) {
-      // Generate memoization key based on input parameters
-      String memoKey = getMemoKey(blinks, stone);
+   /**
+    * Answers "how many stones after N blinks" for astronomically large N, modulo a prime.
+    * <p>
+    * The distinct engravings reachable from the initial stones form a closed set of a few thousand states, so the
+    * stone counts evolve linearly under a sparse transition matrix {@code T}: {@code count(N) = 1 * T^N * v0}.
+    * Squaring a dense matrix of that size costs ~n^3 per product, which is out of reach, so the sparse matrix is
+    * only used to produce the first 2n counts. Berlekamp-Massey turns those into the minimal linear recurrence of
+    * the sequence (order at most n), and {@code count(N)} follows from {@code x^N mod} the recurrence polynomial,
+    * computed by repeated squaring with the polynomial products spread over all cores.
+    */
+   static class BlinkRecurrence
+   {
+      private final long prime;
+      // Counts after 0, 1, 2, ... blinks, modulo the prime
+      private final long[] counts;
+      // counts[n] = sum of recurrence[i] * counts[n - 1 - i] for every n >= recurrence.length
+      private final long[] recurrence;
 
-      // Check if the result is already memoized
-      if (memo.containsKey(memoKey)) {
-         return memo.get(memoKey);
+      BlinkRecurrence(long[] stones, long prime)
+      {
+         if (prime < 2 || prime > Integer.MAX_VALUE || !BigInteger.valueOf(prime).isProbablePrime(30)) {
+            throw new IllegalArgumentException("Modulus must be a prime below 2^31: " + prime);
+         }
+         this.prime = prime;
+
+         // 1) Discover the closed state set and its sparse transitions
+         LongLongMap stateIndex = new LongLongMap();
+         long[] states = new long[64];
+         int stateCount = 0;
+         for (long stone : stones) {
+            if (stone < 0) {
+               throw new IllegalArgumentException("Stone numbers cannot be negative: " + stone);
+            }
+            if (stateIndex.get(stone, -1) < 0) {
+               stateIndex.add(stone, stateCount, 0);
+               states = ensureCapacity(states, stateCount);
+               states[stateCount++] = stone;
+            }
+         }
+
+         int[][] successors = new int[64][];
+         for (int state = 0; state < stateCount; state++) {
+            long[] next = blink(states[state]);
+            int[] targets = new int[next.length];
+            for (int i = 0; i < next.length; i++) {
+               long index = stateIndex.get(next[i], -1);
+               if (index < 0) {
+                  stateIndex.add(next[i], stateCount, 0);
+                  states = ensureCapacity(states, stateCount);
+                  index = stateCount;
+                  states[stateCount++] = next[i];
+               }
+               targets[i] = (int) index;
+            }
+            if (state == successors.length) {
+               successors = Arrays.copyOf(successors, state * 2);
+            }
+            successors[state] = targets;
+         }
+
+         // 2) The first 2n counts from the sparse transitions, enough to pin down a recurrence of order <= n
+         long[] population = new long[stateCount];
+         for (long stone : stones) {
+            int state = (int) stateIndex.get(stone, -1);
+            population[state] = (population[state] + 1) % prime;
+         }
+         counts = new long[2 * stateCount + 2];
+         long[] next = new long[stateCount];
+         for (int blink = 0; blink < counts.length; blink++) {
+            long total = 0;
+            for (long count : population) {
+               total += count;
+            }
+            counts[blink] = total % prime;
+
+            Arrays.fill(next, 0L);
+            for (int state = 0; state < stateCount; state++) {
+               for (int target : successors[state]) {
+                  next[target] = (next[target] + population[state]) % prime;
+               }
+            }
+            long[] swap = population;
+            population = next;
+            next = swap;
+         }
+
+         // 3) Shortest recurrence generating the counts
+         recurrence = berlekampMassey(counts, prime);
       }
 
-      // Base cases
-      if (blinks == 0) {
-         return 1;
+      private static long[] ensureCapacity(long[] values, int size)
+      {
+         return size < values.length ? values : Arrays.copyOf(values, size * 2);
       }
-      if (stone == 0) {
-         long result = calculateSizeEvolutionForSingleStone(blinks - 1, 1L);
-         memo.put(memoKey, result); // Memoize result
-         return result;
+
+      // The engravings a stone turns into after one blink
+      private static long[] blink(long stone)
+      {
+         if (stone == 0) {
+            return new long[] { 1 };
+         }
+         int digits = Arithmetic.digitCount(stone);
+         if (digits % 2 == 0) {
+            long half = Arithmetic.powerOfTen(digits / 2);
+            return new long[] { stone / half, stone % half };
+         }
+         return new long[] { Math.multiplyExact(stone, 2024L) };
       }
 
-      long result;
-      // Process based on whether the stone has an even number of digits
-      if (hasEvenNrDigits(stone)) {
-         Long[] splitResult = split(stone);
-         result = calculateSizeEvolutionForSingleStone(blinks - 1, splitResult[0]) +
-               calculateSizeEvolutionForSingleStone(blinks - 1, splitResult[1]);
-      } else {
-         result = calculateSizeEvolutionForSingleStone(blinks - 1, stone * 2024L);
+      /**
+       * @return the number of stones after the given number of blinks, modulo the prime
+       */
+      long countStones(long blinks)
+      {
+         if (blinks < 0) {
+            throw new IllegalArgumentException("Number of blinks cannot be negative: " + blinks);
+         }
+         if (blinks < counts.length) {
+            return counts[(int) blinks];
+         }
+
+         // count(N) = sum of r[i] * count(i), where r(x) = x^N mod (x^L - c[0] x^(L-1) - ... - c[L-1])
+         long[] remainder = powerOfXModRecurrence(blinks);
+         long total = 0;
+         for (int i = 0; i < remainder.length; i++) {
+            total = (total + remainder[i] * counts[i]) % prime;
+         }
+         return total;
       }
 
-      // Memoize and return the result
-      memo.put(memoKey, result);
-      return result;
-   }
+      private long[] powerOfXModRecurrence(long exponent)
+      {
+         int order = recurrence.length;
+         long[] result = new long[order];
+         if (order == 0) {
+            return result; // Every count is zero
+         }
+         result[0] = 1;
 
+         for (int bit = 63 - Long.numberOfLeadingZeros(exponent); bit >= 0; bit--) {
+            result = reduce(square(result));
+            if ((exponent >>> bit & 1) == 1) {
+               result = multiplyByX(result);
+            }
+         }
+         return result;
+      }
 
+      // Squares the polynomial, each output coefficient is computed independently on the common pool
+      private long[] square(long[] polynomial)
+      {
+         int order = polynomial.length;
+         long[] product = new long[2 * order - 1];
+         IntStream.range(0, product.length).parallel().forEach(k -> {
+            long sum = 0;
+            for (int i = Math.max(0, k - order + 1), end = Math.min(k, order - 1); i <= end; i++) {
+               sum = (sum + polynomial[i] * polynomial[k - i]) % prime;
+            }
+            product[k] = sum;
+         });
+         return product;
+      }
 
-   private boolean hasEvenNrDigits(Long stone)
-   {
-      int nrOfDigits = getNrOfDigits(stone);
-      return nrOfDigits % 2 == 0;
-   }
+      // Folds every coefficient of degree >= L back with x^L = c[0] x^(L-1) + ... + c[L-1]
+      private long[] reduce(long[] polynomial)
+      {
+         int order = recurrence.length;
+         for (int degree = polynomial.length - 1; degree >= order; degree--) {
+            long coefficient = polynomial[degree];
+            if (coefficient == 0) {
+               continue;
+            }
+            for (int i = 0; i < order; i++) {
+               int target = degree - 1 - i;
+               polynomial[target] = (polynomial[target] + coefficient * recurrence[i]) % prime;
+            }
+         }
+         return Arrays.copyOf(polynomial, order);
+      }
 
-   private int getNrOfDigits(Long stone) {
-      if (stone == 0) {
-         return 1;
+      private long[] multiplyByX(long[] polynomial)
+      {
+         int order = recurrence.length;
+         long[] shifted = new long[order + 1];
+         System.arraycopy(polynomial, 0, shifted, 1, order);
+         return reduce(shifted);
       }
-      return (int) Math.log10(Math.abs(stone)) + 1;
-   }
 
+      /**
+       * Finds the shortest recurrence {@code s[n] = c[0] s[n-1] + ... + c[L-1] s[n-L]} over the prime field.
+       */
+      private static long[] berlekampMassey(long[] sequence, long prime)
+      {
+         long[] current = new long[sequence.length + 1];
+         long[] previous = new long[sequence.length + 1];
+         current[0] = 1;
+         previous[0] = 1;
+         int length = 0;
+         int shift = 1;
+         long previousDiscrepancy = 1;
+
+         for (int n = 0; n < sequence.length; n++) {
+            long discrepancy = sequence[n];
+            for (int i = 1; i <= length; i++) {
+               discrepancy = (discrepancy + current[i] * sequence[n - i]) % prime;
+            }
+            if (discrepancy == 0) {
+               shift++;
+               continue;
+            }
 
-   private Long[] split(final Long stone)
-   {
-      int nrOfDigits = getNrOfDigits(stone);
-      final int splitAfter = nrOfDigits / 2;
-      Long[] result = new Long[2];
-      result[0] = stone / (long) Math.pow(10, splitAfter);
-      result[1] = stone % (long) Math.pow(10, splitAfter);
-      return result;
+            long factor = discrepancy * modInverse(previousDiscrepancy, prime) % prime;
+            long[] saved = length * 2 <= n ? current.clone() : null;
+            for (int i = shift; i < current.length; i++) {
+               current[i] = Math.floorMod(current[i] - factor * previous[i - shift] % prime, prime);
+            }
+            if (saved != null) {
+               length = n + 1 - length;
+               previous = saved;
+               previousDiscrepancy = discrepancy;
+               shift = 1;
+            } else {
+               shift++;
+            }
+         }
+
+         // The connection polynomial is 1 + current[1] x + ..., so c[i] = -current[i + 1]
+         long[] coefficients = new long[length];
+         for (int i = 0; i < length; i++) {
+            coefficients[i] = Math.floorMod(-current[i + 1], prime);
+         }
+         return coefficients;
+      }
+
+      private static long modInverse(long value, long prime)
+      {
+         return BigInteger.valueOf(value).modInverse(BigInteger.valueOf(prime)).longValue();
+      }
    }
 
-   private static String getMemoKey(int blinks, long stone)
+   /**
+    * Open-addressing hash map from non-negative long keys to long values, without boxing.
+    */
+   static class LongLongMap
    {
-      return blinks + "_" + stone;
+      private static final long EMPTY = -1;
+
+      private long[] keys;
+      private long[] values;
+      private int size;
+
+      LongLongMap()
+      {
+         keys = new long[64];
+         values = new long[64];
+         Arrays.fill(keys, EMPTY);
+      }
+
+      int capacity()
+      {
+         return keys.length;
+      }
+
+      boolean isUsed(int slot)
+      {
+         return keys[slot] != EMPTY;
+      }
+
+      long keyAt(int slot)
+      {
+         return keys[slot];
+      }
+
+      long valueAt(int slot)
+      {
+         return values[slot];
+      }
+
+      long get(long key, long absent)
+      {
+         int slot = find(key);
+         return keys[slot] == key ? values[slot] : absent;
+      }
+
+      // Adds the amount to the key's value, modulo the modulus unless it is 0
+      void add(long key, long amount, long modulus)
+      {
+         int slot = find(key);
+         if (keys[slot] == EMPTY) {
+            keys[slot] = key;
+            values[slot] = modulus == 0 ? amount : amount % modulus;
+            if (++size * 2 > keys.length) {
+               grow();
+            }
+         } else if (modulus == 0) {
+            values[slot] = Math.addExact(values[slot], amount);
+         } else {
+            values[slot] = (values[slot] + amount % modulus) % modulus;
+         }
+      }
+
+      void clear()
+      {
+         Arrays.fill(keys, EMPTY);
+         size = 0;
+      }
+
+      private int find(long key)
+      {
+         int mask = keys.length - 1;
+         int slot = (int) ((key * 0x9E3779B97F4A7C15L) >>> 32) & mask;
+         while (keys[slot] != EMPTY && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+         }
+         return slot;
+      }
+
+      private void grow()
+      {
+         long[] oldKeys = keys;
+         long[] oldValues = values;
+         keys = new long[oldKeys.length * 2];
+         values = new long[oldKeys.length * 2];
+         Arrays.fill(keys, EMPTY);
+         for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+               int slot = find(oldKeys[i]);
+               keys[slot] = oldKeys[i];
+               values[slot] = oldValues[i];
+            }
+         }
+      }
    }
 }
-
@@ -1,8 +1,8 @@
 package aoc.year2024;
 
-import java.util.HashSet;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Set;
+import java.util.stream.IntStream;
 
 
 public class Day12
@@ -21,220 +21,285 @@ public class Day12
          throw new IllegalArgumentException("Input list cannot be null or empty");
       }
 
-      char[][] grid = makeTheGrid(input);
+      GardenMap gardenMap = new GardenMap(input);
+      RegionTally regions = gardenMap.labelRegions();
 
-      int totalPriceWithPerimeter = traverseAndCalculateTotalPrice(grid, true);
-      int totalPriceWithSide = traverseAndCalculateTotalPrice(grid, false);
+      long totalPriceWithPerimeter = regions.priceWithPerimeter();
+      long totalPriceWithSide = regions.priceWithSides();
 
       System.out.println("Part 1: " + totalPriceWithPerimeter);
       System.out.println("Part 2: " + totalPriceWithSide);
    }
 
-   private char[][] makeTheGrid(List<String> gridData)
+   /**
+    * The garden as a flat array of plants, cell {@code row * cols + col}.
+    */
+   static class GardenMap
    {
-      return gridData.stream().map(String::toCharArray).toArray(char[][]::new);
-   }
+      private static final int[] DIAGONAL_ROW = { -1, -1, 1, 1 };
+      private static final int[] DIAGONAL_COL = { -1, 1, 1, -1 };
+      // Roughly how many plots one parallel task labels
+      private static final int STRIP_CELLS = 1 << 18;
+
+      final int rows;
+      final int cols;
+      private final char[] plants;
+
+      GardenMap(List<String> gridData)
+      {
+         rows = gridData.size();
+         cols = gridData.get(0).length();
+         plants = new char[rows * cols];
+         for (int row = 0; row < rows; row++) {
+            String line = gridData.get(row);
+            if (line.length() != cols) {
+               throw new IllegalArgumentException("All rows must have the same length: '" + line + "'");
+            }
+            line.getChars(0, cols, plants, row * cols);
+         }
+      }
+
+      /**
+       * Splits the garden into horizontal strips and labels them in parallel, then stitches the strips
+       * together: the labels of every strip are appended to one union-find, and plots facing each other
+       * across a strip boundary with the same plant have their labels unioned, which also combines the tallies.
+       */
+      RegionTally labelRegions()
+      {
+         int stripRows = Math.max(1, STRIP_CELLS / cols);
+         int strips = (rows + stripRows - 1) / stripRows;
+         List<StripLabels> labelledStrips = IntStream.range(0, strips)
+               .parallel()
+               .mapToObj(strip -> labelStrip(strip * stripRows, Math.min(rows, (strip + 1) * stripRows)))
+               .toList();
+
+         RegionTally tally = new RegionTally();
+         int previousOffset = 0;
+         for (int strip = 0; strip < strips; strip++) {
+            StripLabels labels = labelledStrips.get(strip);
+            int offset = tally.append(labels.tally);
+            if (strip > 0) {
+               int[] above = labelledStrips.get(strip - 1).lastRowLabels;
+               int boundary = labels.fromRow;
+               for (int col = 0; col < cols; col++) {
+                  if (plants[boundary * cols + col] == plants[(boundary - 1) * cols + col]) {
+                     tally.union(previousOffset + above[col], offset + labels.firstRowLabels[col]);
+                  }
+               }
+            }
+            previousOffset = offset;
+         }
+         return tally;
+      }
 
-   private int traverseAndCalculateTotalPrice(final char[][] grid, boolean usePerimeter) {
-      final boolean[][] visited = new boolean[grid.length][grid[0].length];
-      int totalPrice = 0;
-      for (int y = 0; y < grid.length; y++) {
-         for (int x = 0; x < grid[0].length; x++) {
-            if (!visited[y][x]) {
-               final Set<String> region = traverseAndFindRegion(x, y, grid[y][x], grid, visited);
-               if(usePerimeter) {
-                  totalPrice += region.size() * calulatePerimeterForRegion(region, grid);
+      /**
+       * Labels the rows of one strip in a single row-major sweep, as if the rows above did not exist. Each plot
+       * joins the region of its left and upper neighbour when they grow the same plant, and the two are unioned
+       * when both do. The plot's fences and corners only depend on its 3x3 neighbourhood, so they are added to
+       * the region right away; a union carries the tallies over to the surviving label.
+       */
+      StripLabels labelStrip(int fromRow, int toRow)
+      {
+         RegionTally tally = new RegionTally();
+         int[] previousLabels = new int[cols];
+         int[] labels = new int[cols];
+         int[] firstRowLabels = null;
+
+         for (int row = fromRow; row < toRow; row++) {
+            for (int col = 0; col < cols; col++) {
+               char plant = plants[row * cols + col];
+               boolean sameLeft = isPlant(row, col - 1, plant);
+               boolean sameUp = row > fromRow && isPlant(row - 1, col, plant);
+
+               int label;
+               if (sameLeft) {
+                  label = tally.find(labels[col - 1]);
+                  if (sameUp) {
+                     label = tally.union(label, previousLabels[col]);
+                  }
+               } else if (sameUp) {
+                  label = tally.find(previousLabels[col]);
                } else {
-                  totalPrice += region.size() * calculateSidesForRegion(region);
+                  label = tally.newLabel();
                }
+               labels[col] = label;
+               tally.addPlot(label, fences(row, col, plant), corners(row, col, plant));
+            }
+            if (row == fromRow) {
+               firstRowLabels = labels.clone();
             }
+            int[] swap = previousLabels;
+            previousLabels = labels;
+            labels = swap;
          }
+         return new StripLabels(fromRow, tally, firstRowLabels, previousLabels);
       }
-      return totalPrice;
-   }
 
-   private Set<String> traverseAndFindRegion(int x, int y, char character, char[][] grid, boolean[][] visited)
-   {
-      final Set<String> result = new HashSet<>();
-      visited[y][x] = true;
-      result.add(x+"-"+y);
-      if (!hasUnvisitedNeighbours(grid,x, y, character, visited)) {
-         return result;
-      } else {
-         if (hasUnvisitedLeftNeighbour(grid,x, y, character, visited)) {
-            result.addAll(traverseAndFindRegion(x - 1, y, character, grid, visited));
+      private boolean isPlant(int row, int col, char plant)
+      {
+         return row >= 0 && row < rows && col >= 0 && col < cols && plants[row * cols + col] == plant;
+      }
+
+      // Sides of the plot that border another plant or the edge of the map
+      private int fences(int row, int col, char plant)
+      {
+         int fences = 0;
+         if (!isPlant(row, col - 1, plant)) {
+            fences++;
          }
-         if (hasUnvisitedRightNeighbour(grid,x, y, character, visited)) {
-            result.addAll(traverseAndFindRegion(x + 1, y, character, grid, visited));
+         if (!isPlant(row, col + 1, plant)) {
+            fences++;
          }
-         if (hasUnvisitedUpperNeighbour(grid,x, y, character, visited)) {
-            result.addAll(traverseAndFindRegion(x, y - 1, character, grid, visited));
+         if (!isPlant(row - 1, col, plant)) {
+            fences++;
          }
-         if (hasUnvisitedLowerNeighbour(grid,x, y, character, visited)) {
-            result.addAll(traverseAndFindRegion(x, y + 1, character, grid, visited));
+         if (!isPlant(row + 1, col, plant)) {
+            fences++;
          }
-         return result;
+         return fences;
       }
-   }
 
-   private int calulatePerimeterForRegion(Set<String> region, char[][] grid)
-   {
-      // Calculating perimeters is just calculating lines
-      int total = 0;
-      for (final String position : region) {
-         int x = Integer.parseInt(position.split("-",2)[0]);
-         int y = Integer.parseInt(position.split("-",2)[1]);
-         int corners = calculatePerimeter(x, y, grid[y][x], grid);
-         total += corners;
-      }
-
-      return total;
-   }
-
-   private int calculatePerimeter(final int x, final int y, final char character, final char[][] grid) {
-      int perimeter = 0;
-      if (!hasLeftNeighbour(grid, x, y, character)) {
-         perimeter++;
-      }
-      if (!hasRightNeighbour(grid, x, y, character)) {
-         perimeter++;
-      }
-      if (!hasUpperNeighbour(grid, x, y, character)) {
-         perimeter++;
-      }
-      if (!hasLowerNeighbour(grid, x, y, character)) {
-         perimeter++;
+      // A region has as many sides as corners, each plot counts its own outer and inner corners
+      private int corners(int row, int col, char plant)
+      {
+         int corners = 0;
+         for (int k = 0; k < 4; k++) {
+            boolean vertical = isPlant(row + DIAGONAL_ROW[k], col, plant);
+            boolean horizontal = isPlant(row, col + DIAGONAL_COL[k], plant);
+            if (!vertical && !horizontal
+                  || vertical && horizontal && !isPlant(row + DIAGONAL_ROW[k], col + DIAGONAL_COL[k], plant)) {
+               corners++;
+            }
+         }
+         return corners;
       }
-      return perimeter;
    }
 
-   private int calculateSidesForRegion(Set<String> region)
+   /**
+    * The labelling of one strip, with the labels of its first and last row for stitching it to its neighbours.
+    */
+   static class StripLabels
    {
-      // Calculating sides is just calculating corners
-      int total = 0;
-      for (final String position : region) {
-         int corners = getCornersForPosition(region, position);
-         total += corners;
-      }
-
-      return total;
-   }
+      final int fromRow;
+      final RegionTally tally;
+      final int[] firstRowLabels;
+      final int[] lastRowLabels;
 
-   private int getCornersForPosition(Set<String> region, String position)
-   {
-      int corners = 0;
-      if (!hasLeftNeighbour(position, region) && !hasUpperNeighbour(position, region)
-            || !hasUpperLeftNeighbour(position, region) && hasLeftNeighbour(position, region)
-            && hasUpperNeighbour(position, region)) {
-         corners++;
-      }
-      if (!hasRightNeighbour(position, region) && !hasUpperNeighbour(position, region)
-            || !hasUpperRightNeighbour(position, region) && hasRightNeighbour(position, region)
-            && hasUpperNeighbour(position, region)) {
-         corners++;
-      }
-      if (!hasRightNeighbour(position, region) && !hasLowerNeighbour(position, region)
-            || !hasLowerRightNeighbour(position, region) && hasRightNeighbour(position, region)
-            && hasLowerNeighbour(position, region)) {
-         corners++;
-      }
-      if (!hasLeftNeighbour(position, region) && !hasLowerNeighbour(position, region)
-            || !hasLowerLeftNeighbour(position, region) && hasLeftNeighbour(position, region)
-            && hasLowerNeighbour(position, region)) {
-         corners++;
+      StripLabels(int fromRow, RegionTally tally, int[] firstRowLabels, int[] lastRowLabels)
+      {
+         this.fromRow = fromRow;
+         this.tally = tally;
+         this.firstRowLabels = firstRowLabels;
+         this.lastRowLabels = lastRowLabels;
       }
-      return corners;
-   }
-
-   private boolean hasUnvisitedNeighbours(final char[][] grid, final int x, final int y, final char character, final boolean[][] visited) {
-      return hasUnvisitedLeftNeighbour(grid, x, y, character, visited)
-            || hasUnvisitedRightNeighbour(grid, x, y, character, visited)
-            || hasUnvisitedUpperNeighbour(grid, x, y, character, visited)
-            || hasUnvisitedLowerNeighbour(grid, x, y, character, visited);
-   }
-
-   private boolean hasLeftNeighbour(final char[][] grid, final int x, final int y, final char character) {
-      return isInBounds(grid, x - 1, y) && grid[y][x - 1] == character;
-   }
-
-   private boolean hasRightNeighbour(final char[][] grid, final int x, final int y, final char character) {
-      return isInBounds(grid, x + 1, y) && grid[y][x + 1] == character;
    }
 
-   private boolean hasUpperNeighbour(final char[][] grid, final int x, final int y, final char character) {
-      return isInBounds(grid, x, y - 1) && grid[y - 1][x] == character;
-   }
-
-   private boolean hasLowerNeighbour(final char[][] grid, final int x, final int y, final char character) {
-      return isInBounds(grid, x, y + 1) && grid[y + 1][x] == character;
-   }
-
-   private boolean isInBounds(final char[][] grid, final int x, final int y) {
-      return x >= 0 && y >= 0 && y < grid.length && x < grid[y].length;
-   }
-
-   private boolean hasUnvisitedLeftNeighbour(final char[][] plot, final int x, final int y, final char name, final boolean[][] visited) {
-      return hasLeftNeighbour(plot, x, y, name) && !visited[y][x - 1];
-   }
-
-   private boolean hasUnvisitedRightNeighbour(final char[][] plot, final int x, final int y, final char name, final boolean[][] visited) {
-      return hasRightNeighbour(plot, x, y, name) && !visited[y][x + 1];
-   }
-
-   private boolean hasUnvisitedUpperNeighbour(final char[][] plot, final int x, final int y, final char name, final boolean[][] visited) {
-      return hasUpperNeighbour(plot, x, y, name) && !visited[y - 1][x];
-   }
-
-   private boolean hasUnvisitedLowerNeighbour(final char[][] grid, final int x, final int y, final char name, final boolean[][] visited) {
-      return hasLowerNeighbour(grid, x, y, name) && !visited[y + 1][x];
-   }
-
-   private boolean hasUpperLeftNeighbour(final String position, final Set<String> region) {
-      int x = Integer.parseInt(position.split("-",2)[0]);
-      int y = Integer.parseInt(position.split("-",2)[1]);
-      return region.contains((x - 1 )+ "-"+ (y - 1));
-   }
+   /**
+    * Union-find over region labels, with the area, fence and corner tallies of each label kept in primitive
+    * arrays. Only the root of a set holds meaningful tallies.
+    */
+   static class RegionTally
+   {
+      private int size;
+      private int[] parent = new int[256];
+      private int[] area = new int[256];
+      private int[] perimeter = new int[256];
+      private int[] corners = new int[256];
 
-   private boolean hasUpperRightNeighbour(final String position, final Set<String> region) {
-      int x = Integer.parseInt(position.split("-",2)[0]);
-      int y = Integer.parseInt(position.split("-",2)[1]);
-      return region.contains((x + 1 )+ "-"+ (y - 1));
-   }
+      int newLabel()
+      {
+         if (size == parent.length) {
+            parent = Arrays.copyOf(parent, size * 2);
+            area = Arrays.copyOf(area, size * 2);
+            perimeter = Arrays.copyOf(perimeter, size * 2);
+            corners = Arrays.copyOf(corners, size * 2);
+         }
+         parent[size] = size;
+         return size++;
+      }
 
-   private boolean hasLowerRightNeighbour(final String position, final Set<String> region) {
-      int x = Integer.parseInt(position.split("-",2)[0]);
-      int y = Integer.parseInt(position.split("-",2)[1]);
-      return region.contains((x + 1 )+ "-"+ (y + 1));
-   }
+      /**
+       * Adds all labels of the other tally, shifted past the labels already present.
+       *
+       * @return the offset that was added to the other tally's labels
+       */
+      int append(RegionTally other)
+      {
+         int offset = size;
+         int newSize = size + other.size;
+         if (newSize > parent.length) {
+            int capacity = Math.max(newSize, parent.length * 2);
+            parent = Arrays.copyOf(parent, capacity);
+            area = Arrays.copyOf(area, capacity);
+            perimeter = Arrays.copyOf(perimeter, capacity);
+            corners = Arrays.copyOf(corners, capacity);
+         }
+         for (int label = 0; label < other.size; label++) {
+            parent[offset + label] = offset + other.parent[label];
+         }
+         System.arraycopy(other.area, 0, area, offset, other.size);
+         System.arraycopy(other.perimeter, 0, perimeter, offset, other.size);
+         System.arraycopy(other.corners, 0, corners, offset, other.size);
+         size = newSize;
+         return offset;
+      }
 
-   private boolean hasLowerLeftNeighbour(final String position, final Set<String> region) {
-      int x = Integer.parseInt(position.split("-",2)[0]);
-      int y = Integer.parseInt(position.split("-",2)[1]);
-      return region.contains((x - 1 )+ "-"+ (y + 1));
-   }
+      void addPlot(int label, int fences, int plotCorners)
+      {
+         area[label]++;
+         perimeter[label] += fences;
+         corners[label] += plotCorners;
+      }
 
-   private boolean hasLeftNeighbour(final String position, final Set<String> region) {
-      int x = Integer.parseInt(position.split("-",2)[0]);
-      int y = Integer.parseInt(position.split("-",2)[1]);
-      return region.contains((x - 1 )+ "-"+ (y));
-   }
+      int find(int label)
+      {
+         while (parent[label] != label) {
+            parent[label] = parent[parent[label]]; // Path halving
+            label = parent[label];
+         }
+         return label;
+      }
 
-   private boolean hasRightNeighbour(final String position, final Set<String> region) {
-      int x = Integer.parseInt(position.split("-",2)[0]);
-      int y = Integer.parseInt(position.split("-",2)[1]);
-      return region.contains((x + 1 )+ "-"+ (y));
-   }
+      // Merges the two sets, the larger region absorbs the smaller one, and returns the surviving root
+      int union(int first, int second)
+      {
+         int rootA = find(first);
+         int rootB = find(second);
+         if (rootA == rootB) {
+            return rootA;
+         }
+         if (area[rootA] < area[rootB]) {
+            int swap = rootA;
+            rootA = rootB;
+            rootB = swap;
+         }
+         parent[rootB] = rootA;
+         area[rootA] += area[rootB];
+         perimeter[rootA] += perimeter[rootB];
+         corners[rootA] += corners[rootB];
+         return rootA;
+      }
 
-   private boolean hasUpperNeighbour(final String position, final Set<String> region) {
-      int x = Integer.parseInt(position.split("-",2)[0]);
-      int y = Integer.parseInt(position.split("-",2)[1]);
-      return region.contains((x)+ "-"+ (y - 1));
-   }
+      long priceWithPerimeter()
+      {
+         long price = 0;
+         for (int label = 0; label < size; label++) {
+            if (parent[label] == label) {
+               price += (long) area[label] * perimeter[label];
+            }
+         }
+         return price;
+      }
 
-   private boolean hasLowerNeighbour(final String position, final Set<String> region) {
-      int x = Integer.parseInt(position.split("-",2)[0]);
-      int y = Integer.parseInt(position.split("-",2)[1]);
-      return region.contains((x)+ "-"+ (y + 1));
+      long priceWithSides()
+      {
+         long price = 0;
+         for (int label = 0; label < size; label++) {
+            if (parent[label] == label) {
+               price += (long) area[label] * corners[label];
+            }
+         }
+         return price;
+      }
    }
 }
-
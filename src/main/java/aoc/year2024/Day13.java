@@ -1,12 +1,26 @@
 package aoc.year2024;
 
+import aoc.Arithmetic;
+import java.math.BigInteger;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
 
 
 public class Day13
 {
    private final List<String> input;
+   private static final long PRIZE_CALIBRATION = 10000000000000L;
+   private static final long A_PRESS_COST = 3;
+   private static final long B_PRESS_COST = 1;
+
+   // Returned instead of a token count when no combination of presses lands the claw on the prize
+   static final long NO_PRIZE = -1;
+   // Long.MIN_VALUE itself is also reported as an overflow, which only costs a detour through the slow path
+   private static final long OVERFLOW = Long.MIN_VALUE;
 
    public Day13(List<String> input)
    {
@@ -22,11 +36,14 @@ public class Day13
 
       List<Equation> equationList = fillEquationList(input);
 
-      long totalTokensPartOne = calculateTotalTokens(equationList, 0L);
+      long totalTokensPartOne = ClawMachines.of(equationList).totalTokens();
 
       System.out.println("Part 1: "+ totalTokensPartOne);
 
-      long totalTokensPartTwo = calculateTotalTokens(equationList, 10000000000000L);
+      List<Equation> calibratedEquations = equationList.stream()
+            .map(equation -> equation.calibratePrizes(PRIZE_CALIBRATION))
+            .toList();
+      long totalTokensPartTwo = ClawMachines.of(calibratedEquations).totalTokens();
 
       System.out.println("Part 2: "+ totalTokensPartTwo);
 
@@ -51,108 +68,544 @@ public class Day13
       return result;
    }
 
-   private long calculateTotalTokens(List<Equation> equationList, long prizeCalibration)
+   private Equation parseToEquation(final List<String> input) {
+      final String line1 = input.get(0);
+      final String line2 = input.get(1);
+      final String line3 = input.get(2);
+
+      final int xa = Integer.parseInt(line1.split("X+")[1].split(",")[0]);
+      final int ya = Integer.parseInt(line1.split("Y+")[1]);
+      final int xb = Integer.parseInt(line2.split("X+")[1].split(",")[0]);
+      final int yb = Integer.parseInt(line2.split("Y+")[1]);
+      final long xPrize = Long.parseLong(line3.split("X=")[1].split(",")[0]);
+      final long yPrize = Long.parseLong(line3.split("Y=")[1]);
+
+      return new Equation(xa, xb, xPrize, ya, yb, yPrize);
+   }
+
+   /**
+    * One claw machine: {@code a * (xa, ya) + b * (xb, yb) = (xPrize, yPrize)}. Equations are immutable, a
+    * calibrated copy is made for part 2.
+    */
+   static class Equation {
+      final int xa;
+      final int xb;
+      final long xPrize;
+      final int ya;
+      final int yb;
+      final long yPrize;
+
+      // Constructor to initialize the equation
+      public Equation(int xa, int xb, long xPrize, int ya, int yb, long yPrize) {
+         this.xa = xa;
+         this.xb = xb;
+         this.xPrize = xPrize;
+         this.ya = ya;
+         this.yb = yb;
+         this.yPrize = yPrize;
+      }
+
+      public Equation calibratePrizes(long prizeCalibration)
+      {
+         return new Equation(xa, xb, Math.addExact(xPrize, prizeCalibration),
+               ya, yb, Math.addExact(yPrize, prizeCalibration));
+      }
+
+      public ButtonLayout buttonLayout()
+      {
+         return new ButtonLayout(new int[][] { { xa, ya }, { xb, yb } }, new long[] { A_PRESS_COST, B_PRESS_COST });
+      }
+
+      public long[] prize()
+      {
+         return new long[] { xPrize, yPrize };
+      }
+   }
+
+   /**
+    * A claw machine model with any number of buttons and axes: {@code moves[button][axis]} is how far a press
+    * moves the claw, {@code costs[button]} what it costs. Moves and costs cannot be negative, and every button
+    * has to move the claw, so the number of presses is bounded by the prize.
+    */
+   static final class ButtonLayout
    {
-      long totalTokens = 0;
-      for (Equation eq : equationList) {
-         try {
-            if(prizeCalibration != 0L)
-            {
-               eq.calibratePrizes(prizeCalibration);
+      final int[][] moves;
+      final long[] costs;
+
+      ButtonLayout(int[][] moves, long[] costs)
+      {
+         if (moves.length == 0 || moves.length != costs.length) {
+            throw new IllegalArgumentException("Every button needs a cost");
+         }
+         int axes = moves[0].length;
+         for (int button = 0; button < moves.length; button++) {
+            if (moves[button].length != axes) {
+               throw new IllegalArgumentException("All buttons must move along the same axes");
             }
-            double[] solution = solveEquation(eq);
-            long a = Math.round(solution[0]);
-            long b = Math.round(solution[1]);
-            // Check if both solutions are natural numbers
-            if (eq.checkAnswers(a,b)) {
-               totalTokens += 3 * a + b;
+            if (costs[button] < 0 || Arrays.stream(moves[button]).anyMatch(move -> move < 0)
+                  || Arrays.stream(moves[button]).allMatch(move -> move == 0)) {
+               throw new IllegalArgumentException("Button " + button + " must have a non-negative cost and move the claw forward");
             }
-         } catch (IllegalArgumentException e) {
-            System.out.println("Error solving equation: " + e.getMessage());
          }
+         this.moves = Arrays.stream(moves).map(int[]::clone).toArray(int[][]::new);
+         this.costs = costs.clone();
+      }
+
+      int buttons()
+      {
+         return moves.length;
       }
 
-      return totalTokens;
+      int axes()
+      {
+         return moves[0].length;
+      }
+
+      @Override
+      public boolean equals(Object other)
+      {
+         return other instanceof ButtonLayout layout
+               && Arrays.deepEquals(moves, layout.moves) && Arrays.equals(costs, layout.costs);
+      }
+
+      @Override
+      public int hashCode()
+      {
+         return 31 * Arrays.deepHashCode(moves) + Arrays.hashCode(costs);
+      }
    }
 
-   private double[] solveEquation(Equation eq)
+   /**
+    * Keeps one elimination per button layout, so machines that only differ in their prize share the work.
+    */
+   static class EliminationCache
    {
-      double[][] coefficients = {
-            {eq.xa, eq.xb},
-            {eq.ya, eq.yb}
-      };
-      double[] constants = {eq.xPrize, eq.yPrize};
+      private final Map<ButtonLayout, ButtonMatrix> eliminations = new ConcurrentHashMap<>();
 
-      int n = constants.length;
-      double[] solution = new double[n];
+      ButtonMatrix forLayout(ButtonLayout layout)
+      {
+         return eliminations.computeIfAbsent(layout, ButtonMatrix::new);
+      }
 
-      // Calculate the determinant of the coefficient matrix
-      double det = coefficients[0][0] * coefficients[1][1] - coefficients[0][1] * coefficients[1][0];
-      if (det == 0) {
-         throw new IllegalArgumentException("The system of equations has no unique solution (determinant is zero).");
+      /**
+       * @return the fewest tokens that win the prize, or {@link Day13#NO_PRIZE}
+       */
+      long minimumTokens(ButtonLayout layout, long[] prize)
+      {
+         return forLayout(layout).minimumTokens(prize);
       }
+   }
 
-      // Calculate the inverse of the coefficient matrix
-      double[][] inverse = new double[2][2];
-      inverse[0][0] = coefficients[1][1] / det;
-      inverse[0][1] = -coefficients[0][1] / det;
-      inverse[1][0] = -coefficients[1][0] / det;
-      inverse[1][1] = coefficients[0][0] / det;
+   /**
+    * A button layout brought into row echelon form once. The system {@code M n = prize} (one column per button)
+    * is eliminated fraction-free with Bareiss' method on {@code [M | I]}, which yields an integer echelon form
+    * {@code U = L M} together with {@code L}. A prize then only needs {@code L prize} and a back substitution.
+    * Buttons without a pivot are free: their presses are enumerated up to what the remaining prize allows,
+    * except for the last one, which is solved in closed form, and the cheapest complete solution wins. All
+    * arithmetic is exact and fails loudly on overflow.
+    */
+   static class ButtonMatrix
+   {
+      private final ButtonLayout layout;
+      private final int buttons;
+      private final int axes;
+      private final int rank;
+      // echelon[row][button], rows from rank on are zero
+      private final long[][] echelon;
+      // transform[row][axis], so that echelon = transform * M
+      private final long[][] transform;
+      private final int[] pivotColumns;
+      private final int[] freeColumns;
+
+      ButtonMatrix(ButtonLayout layout)
+      {
+         this.layout = layout;
+         buttons = layout.buttons();
+         axes = layout.axes();
 
-      // Multiply the inverse of the coefficient matrix by the constants vector
-      for (int i = 0; i < 2; i++) {
-         for (int j = 0; j < 2; j++) {
-            solution[i] += inverse[i][j] * constants[j];
+         int width = buttons + axes;
+         long[][] augmented = new long[axes][width];
+         for (int axis = 0; axis < axes; axis++) {
+            for (int button = 0; button < buttons; button++) {
+               augmented[axis][button] = layout.moves[button][axis];
+            }
+            augmented[axis][buttons + axis] = 1;
+         }
+
+         int[] pivots = new int[Math.min(axes, buttons)];
+         int[] free = new int[buttons];
+         int freeCount = 0;
+         int row = 0;
+         long previousPivot = 1;
+         for (int column = 0; column < buttons; column++) {
+            int pivotRow = row;
+            while (pivotRow < axes && augmented[pivotRow][column] == 0) {
+               pivotRow++;
+            }
+            if (pivotRow == axes) {
+               free[freeCount++] = column;
+               continue;
+            }
+            long[] swap = augmented[row];
+            augmented[row] = augmented[pivotRow];
+            augmented[pivotRow] = swap;
+
+            long pivot = augmented[row][column];
+            for (int below = row + 1; below < axes; below++) {
+               long factor = augmented[below][column];
+               for (int j = column + 1; j < width; j++) {
+                  // Bareiss: the division by the previous pivot is exact
+                  augmented[below][j] = Math.subtractExact(Math.multiplyExact(pivot, augmented[below][j]),
+                        Math.multiplyExact(factor, augmented[row][j])) / previousPivot;
+               }
+               augmented[below][column] = 0;
+            }
+            previousPivot = pivot;
+            pivots[row++] = column;
+         }
+
+         rank = row;
+         pivotColumns = Arrays.copyOf(pivots, rank);
+         freeColumns = Arrays.copyOf(free, freeCount);
+         echelon = new long[axes][];
+         transform = new long[axes][];
+         for (int i = 0; i < axes; i++) {
+            echelon[i] = Arrays.copyOf(augmented[i], buttons);
+            transform[i] = Arrays.copyOfRange(augmented[i], buttons, width);
          }
       }
 
-      return solution;
-   }
+      /**
+       * @return the fewest tokens that win the prize, or {@link Day13#NO_PRIZE}
+       */
+      long minimumTokens(long[] prize)
+      {
+         if (prize.length != axes) {
+            throw new IllegalArgumentException("Expected a prize on " + axes + " axes");
+         }
+         long[] rhs = new long[axes];
+         for (int i = 0; i < axes; i++) {
+            long value = 0;
+            for (int axis = 0; axis < axes; axis++) {
+               value = Math.addExact(value, Math.multiplyExact(transform[i][axis], prize[axis]));
+            }
+            rhs[i] = value;
+         }
+         // The zero rows of the echelon form have to be matched by zero on the right
+         for (int i = rank; i < axes; i++) {
+            if (rhs[i] != 0) {
+               return NO_PRIZE;
+            }
+         }
+         return enumerateFreePresses(0, prize.clone(), rhs, new long[buttons]);
+      }
 
-   private Equation parseToEquation(final List<String> input) {
-      final String line1 = input.get(0);
-      final String line2 = input.get(1);
-      final String line3 = input.get(2);
+      /**
+       * Tries every press count of the next free button that still fits in the remaining prize. Each press is
+       * taken off both the remaining prize and the eliminated right-hand side, so the pivot buttons only have to
+       * cover what is left.
+       */
+      private long enumerateFreePresses(int index, long[] remaining, long[] rhs, long[] presses)
+      {
+         if (index == freeColumns.length) {
+            return backSubstitute(rhs, presses);
+         }
 
-      final int xa = Integer.parseInt(line1.split("X+")[1].split(",")[0]);
-      final int ya = Integer.parseInt(line1.split("Y+")[1]);
-      final int xb = Integer.parseInt(line2.split("X+")[1].split(",")[0]);
-      final int yb = Integer.parseInt(line2.split("Y+")[1]);
-      final int xPrize = Integer.parseInt(line3.split("X=")[1].split(",")[0]);
-      final int yPrize = Integer.parseInt(line3.split("Y=")[1]);
+         int column = freeColumns[index];
+         int[] move = layout.moves[column];
+         long limit = Long.MAX_VALUE;
+         for (int axis = 0; axis < axes; axis++) {
+            if (move[axis] > 0) {
+               limit = Math.min(limit, remaining[axis] / move[axis]);
+            }
+         }
+         if (limit < 0) {
+            return NO_PRIZE; // The prize lies behind the claw
+         }
+         if (index == freeColumns.length - 1) {
+            return cheapestLastFreePress(column, limit, rhs, presses);
+         }
 
-      return new Equation(xa, xb, xPrize, ya, yb, yPrize);
+         long best = NO_PRIZE;
+         for (long count = 0; count <= limit; count++) {
+            presses[column] = count;
+            long tokens = enumerateFreePresses(index + 1, remaining, rhs, presses);
+            if (tokens != NO_PRIZE && (best == NO_PRIZE || tokens < best)) {
+               best = tokens;
+            }
+            shift(remaining, rhs, column, -1);
+         }
+         shift(remaining, rhs, column, limit + 1);
+         presses[column] = 0;
+         return best;
+      }
+
+      // Adds the effect of the given number of presses of a free button to the remaining prize and the rhs
+      private void shift(long[] remaining, long[] rhs, int column, long presses)
+      {
+         for (int axis = 0; axis < axes; axis++) {
+            remaining[axis] = Math.addExact(remaining[axis], Math.multiplyExact(presses, layout.moves[column][axis]));
+         }
+         for (int i = 0; i < rank; i++) {
+            rhs[i] = Math.addExact(rhs[i], Math.multiplyExact(presses, echelon[i][column]));
+         }
+      }
+
+      /**
+       * The last free button is not enumerated. With the other free buttons fixed, every pivot button is an
+       * affine function of its press count t: {@code n = (s + d t) / D}, with D the product of the pivots.
+       * Whole presses need {@code D | s + d t}, congruences that narrow t down to one residue class, and
+       * non-negative presses bound t to an interval. The cost is affine in t too, so the cheapest press count is
+       * the first or the last member of that class inside the interval.
+       */
+      private long cheapestLastFreePress(int column, long limit, long[] rhs, long[] presses)
+      {
+         long denominator = 1;
+         for (int k = 0; k < rank; k++) {
+            denominator = Math.multiplyExact(denominator, echelon[k][pivotColumns[k]]);
+         }
+         long[] rhsAfterOnePress = rhs.clone();
+         for (int i = 0; i < rank; i++) {
+            rhsAfterOnePress[i] = Math.subtractExact(rhs[i], echelon[i][column]);
+         }
+         long[] offset = scaledPivotPresses(rhs, denominator);
+         long[] afterOnePress = scaledPivotPresses(rhsAfterOnePress, denominator);
+         long sign = Long.signum(denominator);
+         denominator = Math.abs(denominator);
+
+         long residue = 0;
+         long modulus = 1;
+         long lower = 0;
+         long upper = limit;
+         long slope = Math.multiplyExact(layout.costs[column], denominator);
+         for (int k = 0; k < rank; k++) {
+            long start = sign * offset[k];
+            long step = Math.subtractExact(sign * afterOnePress[k], start);
+            slope = Math.addExact(slope, Math.multiplyExact(layout.costs[pivotColumns[k]], step));
+
+            // Whole presses: step * t = -start (mod denominator)
+            long g = Arithmetic.gcd(Math.floorMod(step, denominator), denominator);
+            if (Math.floorMod(start, g) != 0) {
+               return NO_PRIZE;
+            }
+            long classModulus = denominator / g;
+            long classResidue = Math.floorMod(
+                  Math.multiplyExact(Math.floorMod(-start / g, classModulus),
+                        Arithmetic.modInverse(Math.floorMod(step / g, classModulus), classModulus)), classModulus);
+            long combinedModulus = modulus / Arithmetic.gcd(modulus, classModulus) * classModulus;
+            long combinedResidue = Arithmetic.chineseRemainder(residue, modulus, classResidue, classModulus);
+            if (combinedResidue < 0) {
+               return NO_PRIZE;
+            }
+            residue = combinedResidue;
+            modulus = combinedModulus;
+
+            // Non-negative presses: start + step * t >= 0
+            if (step > 0) {
+               lower = Math.max(lower, Math.floorDiv(-start + step - 1, step));
+            } else if (step < 0) {
+               upper = Math.min(upper, Math.floorDiv(start, -step));
+            } else if (start < 0) {
+               return NO_PRIZE;
+            }
+         }
+
+         long count = slope >= 0
+               ? lower + Math.floorMod(residue - lower, modulus)
+               : upper - Math.floorMod(upper - residue, modulus);
+         if (count < lower || count > upper) {
+            return NO_PRIZE;
+         }
+         presses[column] = count;
+         long[] rhsForCount = rhs.clone();
+         for (int i = 0; i < rank; i++) {
+            rhsForCount[i] = Math.subtractExact(rhs[i], Math.multiplyExact(count, echelon[i][column]));
+         }
+         long tokens = backSubstitute(rhsForCount, presses);
+         presses[column] = 0;
+         return tokens;
+      }
+
+      // Pivot presses times the denominator, which keeps every step of the back substitution whole
+      private long[] scaledPivotPresses(long[] rhs, long denominator)
+      {
+         long[] scaled = new long[rank];
+         for (int k = rank - 1; k >= 0; k--) {
+            long value = Math.multiplyExact(denominator, rhs[k]);
+            for (int later = k + 1; later < rank; later++) {
+               value = Math.subtractExact(value, Math.multiplyExact(echelon[k][pivotColumns[later]], scaled[later]));
+            }
+            scaled[k] = value / echelon[k][pivotColumns[k]];
+         }
+         return scaled;
+      }
+
+      // Solves the pivot buttons bottom-up, every press count has to be a whole, non-negative number
+      private long backSubstitute(long[] rhs, long[] presses)
+      {
+         for (int k = rank - 1; k >= 0; k--) {
+            long value = rhs[k];
+            for (int later = k + 1; later < rank; later++) {
+               int column = pivotColumns[later];
+               value = Math.subtractExact(value, Math.multiplyExact(echelon[k][column], presses[column]));
+            }
+            long pivot = echelon[k][pivotColumns[k]];
+            if (value % pivot != 0 || value / pivot < 0) {
+               return NO_PRIZE;
+            }
+            presses[pivotColumns[k]] = value / pivot;
+         }
+
+         long tokens = 0;
+         for (int button = 0; button < buttons; button++) {
+            tokens = Math.addExact(tokens, Math.multiplyExact(layout.costs[button], presses[button]));
+         }
+         return tokens;
+      }
    }
 
-   static class Equation {
-      int xa;
-      int xb;
-      long xPrize;
-      int ya;
-      int yb;
-      long yPrize;
+   /**
+    * Claw machines stored as a struct of arrays, so a whole list is solved in one tight loop over primitives.
+    * Large batches are split over the common pool.
+    */
+   static class ClawMachines
+   {
+      private static final int PARALLEL_THRESHOLD = 1 << 14;
 
-      // Constructor to initialize the equation
-      public Equation(int xa, int xb, int xPrize, int ya, int yb, int yPrize) {
-         this.xa = xa;
-         this.xb = xb;
-         this.xPrize = xPrize;
-         this.ya = ya;
-         this.yb = yb;
-         this.yPrize = yPrize;
+      private final EliminationCache eliminations = new EliminationCache();
+      private int size;
+      private int[] xa = new int[64];
+      private int[] xb = new int[64];
+      private int[] ya = new int[64];
+      private int[] yb = new int[64];
+      private long[] xPrize = new long[64];
+      private long[] yPrize = new long[64];
+
+      static ClawMachines of(List<Equation> equations)
+      {
+         ClawMachines machines = new ClawMachines();
+         for (Equation equation : equations) {
+            machines.add(equation.xa, equation.xb, equation.xPrize, equation.ya, equation.yb, equation.yPrize);
+         }
+         return machines;
+      }
+
+      void add(int buttonXa, int buttonXb, long prizeX, int buttonYa, int buttonYb, long prizeY)
+      {
+         if (size == xa.length) {
+            xa = Arrays.copyOf(xa, size * 2);
+            xb = Arrays.copyOf(xb, size * 2);
+            ya = Arrays.copyOf(ya, size * 2);
+            yb = Arrays.copyOf(yb, size * 2);
+            xPrize = Arrays.copyOf(xPrize, size * 2);
+            yPrize = Arrays.copyOf(yPrize, size * 2);
+         }
+         xa[size] = buttonXa;
+         xb[size] = buttonXb;
+         ya[size] = buttonYa;
+         yb[size] = buttonYb;
+         xPrize[size] = prizeX;
+         yPrize[size] = prizeY;
+         size++;
       }
 
-      public boolean checkAnswers(long ansA, long ansB)
+      /**
+       * Sums the tokens over every winnable machine.
+       */
+      long totalTokens()
       {
-         return ansA >=0 && ansB >= 0 &&
-               ansA * xa + ansB * xb == xPrize && ansA * ya + ansB * yb == yPrize;
+         IntStream machines = IntStream.range(0, size);
+         if (size >= PARALLEL_THRESHOLD) {
+            machines = machines.parallel();
+         }
+         return machines
+               .mapToLong(this::tokensToWin)
+               .filter(tokens -> tokens != NO_PRIZE)
+               .sum();
       }
 
-      public void calibratePrizes(long prizeCalibration)
+      /**
+       * Parallel buttons leave a whole line of candidate solutions instead of one, the general solver picks the
+       * cheapest. It only models buttons that move the claw forward, anything else stays unwinnable.
+       */
+      private long tokensToWin(int i)
       {
-         this.xPrize = xPrize + prizeCalibration;
-         this.yPrize = yPrize + prizeCalibration;
+         if ((long) xa[i] * yb[i] != (long) xb[i] * ya[i]) {
+            return Day13.tokensToWin(xa[i], xb[i], ya[i], yb[i], xPrize[i], yPrize[i]);
+         }
+         if (xa[i] < 0 || ya[i] < 0 || xb[i] < 0 || yb[i] < 0 || xa[i] + ya[i] == 0 || xb[i] + yb[i] == 0) {
+            return NO_PRIZE;
+         }
+         ButtonLayout layout = new ButtonLayout(new int[][] { { xa[i], ya[i] }, { xb[i], yb[i] } },
+               new long[] { A_PRESS_COST, B_PRESS_COST });
+         return eliminations.minimumTokens(layout, new long[] { xPrize[i], yPrize[i] });
       }
    }
-}
 
+   /**
+    * Solves the 2x2 system exactly with Cramer's rule: both numerators have to be divisible by the determinant
+    * and the presses non-negative. The cross products are checked with {@link Math#multiplyHigh}, and the rare
+    * system that does not fit in a long is solved again with {@link BigInteger}. Parallel buttons (determinant
+    * 0) have no unique solution and are reported as unwinnable here, {@link ClawMachines} hands them to the
+    * general solver.
+    *
+    * @return the tokens needed to win the prize, or {@link #NO_PRIZE}
+    */
+   static long tokensToWin(int xa, int xb, int ya, int yb, long xPrize, long yPrize)
+   {
+      long det = (long) xa * yb - (long) xb * ya;
+      if (det == 0) {
+         return NO_PRIZE;
+      }
+
+      long aNumerator = crossDifference(xPrize, yb, xb, yPrize);
+      long bNumerator = crossDifference(xa, yPrize, ya, xPrize);
+      if (aNumerator == OVERFLOW || bNumerator == OVERFLOW) {
+         return tokensToWinWide(xa, xb, ya, yb, xPrize, yPrize);
+      }
+      if (aNumerator % det != 0 || bNumerator % det != 0) {
+         return NO_PRIZE;
+      }
+
+      long a = aNumerator / det;
+      long b = bNumerator / det;
+      if (a < 0 || b < 0) {
+         return NO_PRIZE;
+      }
+      return Math.addExact(Math.multiplyExact(A_PRESS_COST, a), Math.multiplyExact(B_PRESS_COST, b));
+   }
+
+   // Returns p * q - r * s, or OVERFLOW when a product or the difference does not fit in a long
+   private static long crossDifference(long p, long q, long r, long s)
+   {
+      long first = p * q;
+      long second = r * s;
+      if (Math.multiplyHigh(p, q) != first >> 63 || Math.multiplyHigh(r, s) != second >> 63) {
+         return OVERFLOW;
+      }
+      long difference = first - second;
+      if (((first ^ second) & (first ^ difference)) < 0) {
+         return OVERFLOW;
+      }
+      return difference;
+   }
+
+   private static long tokensToWinWide(int xa, int xb, int ya, int yb, long xPrize, long yPrize)
+   {
+      BigInteger det = BigInteger.valueOf((long) xa * yb - (long) xb * ya);
+      BigInteger prizeX = BigInteger.valueOf(xPrize);
+      BigInteger prizeY = BigInteger.valueOf(yPrize);
+      BigInteger[] a = prizeX.multiply(BigInteger.valueOf(yb))
+            .subtract(prizeY.multiply(BigInteger.valueOf(xb)))
+            .divideAndRemainder(det);
+      BigInteger[] b = prizeY.multiply(BigInteger.valueOf(xa))
+            .subtract(prizeX.multiply(BigInteger.valueOf(ya)))
+            .divideAndRemainder(det);
+      if (a[1].signum() != 0 || b[1].signum() != 0 || a[0].signum() < 0 || b[0].signum() < 0) {
+         return NO_PRIZE;
+      }
+      return a[0].multiply(BigInteger.valueOf(A_PRESS_COST))
+            .add(b[0].multiply(BigInteger.valueOf(B_PRESS_COST)))
+            .longValueExact();
+   }
+}
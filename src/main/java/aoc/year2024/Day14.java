@@ -1,9 +1,9 @@
 package aoc.year2024;
 
-import java.util.ArrayList;
-import java.util.HashMap;
+import aoc.Arithmetic;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Objects;
+import java.util.stream.IntStream;
 
 
 public class Day14
@@ -12,8 +12,8 @@ public class Day14
 
    private static final int MAX_WIDTH = 101;
    private static final int MAX_HEIGHT = 103;
-
-   HashMap<String, ArrayList<GridRobot>> robotPositionMap;
+   // The frame of the tree has at least this many robots side by side
+   private static final int TREE_BASE_LENGTH = 10;
 
    public Day14(List<String> input)
    {
@@ -27,175 +27,315 @@ public class Day14
          throw new IllegalArgumentException("Input list cannot be null or empty");
       }
 
-      final List<GridRobot> gridRobotList = fillTheGridRobotList(input);
+      final RobotSwarm swarm = fillTheRobotSwarm(input);
 
-      solveAll(gridRobotList);
+      solveAll(swarm);
    }
 
-   private List<GridRobot> fillTheGridRobotList(List<String> input)
+   private RobotSwarm fillTheRobotSwarm(List<String> input)
    {
-      final List<GridRobot> robots = new ArrayList<>();
+      final RobotSwarm swarm = new RobotSwarm(MAX_WIDTH, MAX_HEIGHT);
       for (final String line : input) {
          final int x = Integer.parseInt(line.split("=")[1].split(",")[0]);
          final int y = Integer.parseInt(line.split("=")[1].split(",")[1].split(" ")[0]);
          final int velX = Integer.parseInt(line.split("v=")[1].split(",")[0]);
          final int velY = Integer.parseInt(line.split("v=")[1].split(",")[1]);
-         robots.add(new GridRobot(x, y, velX, velY));
+         swarm.add(x, y, velX, velY);
       }
-      return robots;
+      return swarm;
    }
 
-   private void solveAll(List<GridRobot> gridRobotList)
+   private void solveAll(RobotSwarm swarm)
    {
-      int seconds = 1;
-      while(true)
-      {
-         robotPositionMap = new HashMap<>();
+      RobotSwarm afterHundredSeconds = swarm.copy();
+      afterHundredSeconds.advance(100);
+      System.out.println("Safety factor after 100 seconds :" + afterHundredSeconds.stats().safetyFactor());
+
+      long seconds = findChristmasTree(swarm);
+      RobotSwarm tree = swarm.copy();
+      tree.advance(seconds);
+      SwarmStats treeStats = tree.stats();
+      if (treeStats.longestRowRun < TREE_BASE_LENGTH) {
+         throw new IllegalStateException("No christmas tree found, the most clustered time is " + seconds);
+      }
+      printTree(treeStats);
+      System.out.println("Seconds to make the christmas tree: " + seconds);
+   }
 
-         for (GridRobot robot : gridRobotList) {
-            moveRobot(robot, true);
+   /**
+    * The axes move independently: x repeats every width seconds and y every height seconds. When the robots
+    * draw the tree they bunch up on both axes, so the swarm is stepped through one period of each axis and
+    * the stats of every second give the time with the smallest x variance and the one with the smallest y
+    * variance. The Chinese Remainder Theorem combines them into the single second within both periods where
+    * both happen.
+    */
+   static long findChristmasTree(RobotSwarm swarm)
+   {
+      RobotSwarm moving = swarm.copy();
+      int bestX = 0;
+      int bestY = 0;
+      double bestVarianceX = Double.MAX_VALUE;
+      double bestVarianceY = Double.MAX_VALUE;
+      for (int time = 0; time < Math.max(swarm.width, swarm.height); time++) {
+         SwarmStats stats = moving.stats();
+         if (time < swarm.width && stats.varianceX() < bestVarianceX) {
+            bestVarianceX = stats.varianceX();
+            bestX = time;
          }
-
-         if(seconds == 100)
-         {
-            System.out.println("Safety factor after 100 seconds :" + getSafetyFactor(gridRobotList));
+         if (time < swarm.height && stats.varianceY() < bestVarianceY) {
+            bestVarianceY = stats.varianceY();
+            bestY = time;
          }
+         moving.step();
+      }
 
-         if (hasHorizontalLine(gridRobotList)) {
-            break;
-         }
-         seconds++;
+      long seconds = Arithmetic.chineseRemainder(bestX, swarm.width, bestY, swarm.height);
+      if (seconds < 0) {
+         throw new IllegalArgumentException("No time matches both remainders");
       }
+      // The start itself is not a move, the same picture comes back one full cycle later
+      return seconds == 0 ? (long) swarm.width * swarm.height / Arithmetic.gcd(swarm.width, swarm.height) : seconds;
+   }
 
-      printTree();
-      System.out.println("Seconds to make the christmas tree: " + seconds);
+   private void printTree(SwarmStats stats) {
+      for (int i = 0;i < stats.height; i++) {
+         StringBuilder line = new StringBuilder(stats.width);
+         for(int j = 0;j < stats.width; j++) {
+            line.append(stats.isOccupied(j, i) ? 'X' : '.');
+         }
+         System.out.println(line);
+      }
    }
 
-   private void moveRobot(GridRobot gridRobot, boolean addToMap)
+   /**
+    * A swarm of robots stored as a struct of arrays. Velocities are normalised to {@code [0, width)} and
+    * {@code [0, height)} when added, so one second is {@code x + vx} followed by a single conditional
+    * subtraction: a branch-free loop over plain int arrays that the JIT turns into SIMD code. Large swarms
+    * are split in ranges over the common pool.
+    */
+   static class RobotSwarm
    {
-      final int newX = gridRobot.getX() + gridRobot.getVelocityX();
-      final int newY = gridRobot.getY() + gridRobot.getVelocityY();
-      gridRobot.setX(newX >= Day14.MAX_WIDTH ? newX % Day14.MAX_WIDTH : newX < 0 ? Day14.MAX_WIDTH + newX : newX);
-      gridRobot.setY(newY >= Day14.MAX_HEIGHT ? newY % Day14.MAX_HEIGHT : newY < 0 ? Day14.MAX_HEIGHT + newY : newY);
+      private static final int ROBOTS_PER_TASK = 1 << 16;
+
+      final int width;
+      final int height;
+      private int size;
+      private int[] x = new int[64];
+      private int[] y = new int[64];
+      private int[] vx = new int[64];
+      private int[] vy = new int[64];
 
-      if(addToMap)
+      RobotSwarm(int width, int height)
       {
-         String mapPosKey = getMapPosKey(gridRobot.getX(), gridRobot.getY());
-         ArrayList<GridRobot> robots = robotPositionMap.getOrDefault(mapPosKey, new ArrayList<>());
-         robots.add(gridRobot);
-         robotPositionMap.put(mapPosKey, robots);
+         if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("The area must have a positive size");
+         }
+         this.width = width;
+         this.height = height;
       }
-   }
-
-   private long getSafetyFactor(final List<GridRobot> robots) {
-      final int middleX = Day14.MAX_WIDTH / 2;
-      final int middleY = Day14.MAX_HEIGHT / 2;
-      final long q1 = robots.stream().filter(r -> r.getX() < middleX && r.getY() < middleY).count();
-      final long q2 = robots.stream().filter(r -> r.getX() > middleX && r.getY() < middleY).count();
-      final long q3 = robots.stream().filter(r -> r.getX() < middleX && r.getY() > middleY).count();
-      final long q4 = robots.stream().filter(r -> r.getX() > middleX && r.getY() > middleY).count();
-      return q1 * q2 * q3 * q4;
-   }
 
-   private boolean hasHorizontalLine(final List<GridRobot> robots)
-   {
-      // Checks if we have 10 unique robots next to each-other to make the base/frame for the tree
-      final int lineSize = 10;
-      for (final GridRobot robot : robots) {
-         final int x = robot.getX();
-         for (int i = 1; i <= lineSize; i++) {
-            if (!robots.contains(new GridRobot(x + i, robot.getY(), 0, 0))) {
-               break;
-            } else if (i == lineSize) {
-               return true;
-            }
+      void add(int positionX, int positionY, int velocityX, int velocityY)
+      {
+         if (size == x.length) {
+            x = Arrays.copyOf(x, size * 2);
+            y = Arrays.copyOf(y, size * 2);
+            vx = Arrays.copyOf(vx, size * 2);
+            vy = Arrays.copyOf(vy, size * 2);
          }
+         x[size] = Math.floorMod(positionX, width);
+         y[size] = Math.floorMod(positionY, height);
+         vx[size] = Math.floorMod(velocityX, width);
+         vy[size] = Math.floorMod(velocityY, height);
+         size++;
       }
-      return false;
-   }
 
-   private void printTree() {
-      for (int i = 0;i < MAX_HEIGHT; i++) {
-         for(int j = 0;j < MAX_WIDTH; j++) {
-            if (robotPositionMap.containsKey(getMapPosKey(j, i))) {
-               System.out.print("X");
-            } else {
-               System.out.print(".");
-            }
+      RobotSwarm copy()
+      {
+         RobotSwarm copy = new RobotSwarm(width, height);
+         copy.size = size;
+         copy.x = x.clone();
+         copy.y = y.clone();
+         copy.vx = vx.clone();
+         copy.vy = vy.clone();
+         return copy;
+      }
+
+      // Moves every robot one second
+      void step()
+      {
+         forEachRange((from, to) -> {
+            stepAxis(x, vx, width, from, to);
+            stepAxis(y, vy, height, from, to);
+         });
+      }
+
+      // Moves every robot the given number of seconds at once, (p + v * t) mod size
+      void advance(long seconds)
+      {
+         int shiftX = Math.floorMod(seconds, width);
+         int shiftY = Math.floorMod(seconds, height);
+         forEachRange((from, to) -> {
+            advanceAxis(x, vx, width, shiftX, from, to);
+            advanceAxis(y, vy, height, shiftY, from, to);
+         });
+      }
+
+      private static void stepAxis(int[] positions, int[] velocities, int size, int from, int to)
+      {
+         for (int i = from; i < to; i++) {
+            int moved = positions[i] + velocities[i];
+            positions[i] = moved >= size ? moved - size : moved;
          }
-         System.out.println();
       }
-   }
 
-   private String getMapPosKey(int x, int y)
-   {
-      return x+"-"+y;
-   }
+      private static void advanceAxis(int[] positions, int[] velocities, int size, int seconds, int from, int to)
+      {
+         for (int i = from; i < to; i++) {
+            positions[i] = (int) ((positions[i] + (long) velocities[i] * seconds) % size);
+         }
+      }
 
-   private static class GridRobot
-   {
-      int x;
-      int y;
-      int velX;
-      int velY;
+      /**
+       * Gathers every metric of the current positions in one pass over the robots: the occupancy histogram,
+       * the quadrant counts and the moments per axis. Ranges are tallied in parallel and merged, the row runs
+       * and density entropy are then read from the merged histogram.
+       */
+      SwarmStats stats()
+      {
+         IntStream ranges = IntStream.range(0, (size + ROBOTS_PER_TASK - 1) / ROBOTS_PER_TASK);
+         if (size > ROBOTS_PER_TASK) {
+            ranges = ranges.parallel();
+         }
+         SwarmStats stats = ranges.collect(() -> new SwarmStats(width, height),
+               (partial, range) -> {
+                  for (int i = range * ROBOTS_PER_TASK, end = Math.min(size, i + ROBOTS_PER_TASK); i < end; i++) {
+                     partial.add(x[i], y[i]);
+                  }
+               },
+               SwarmStats::combine);
+         stats.finish();
+         return stats;
+      }
 
-      public GridRobot(int x, int y, int velX, int velY)
+      private void forEachRange(RangeTask task)
       {
-         this.x = x;
-         this.y = y;
-         this.velX = velX;
-         this.velY = velY;
+         if (size <= ROBOTS_PER_TASK) {
+            task.run(0, size);
+            return;
+         }
+         IntStream.range(0, (size + ROBOTS_PER_TASK - 1) / ROBOTS_PER_TASK)
+               .parallel()
+               .forEach(range -> task.run(range * ROBOTS_PER_TASK, Math.min(size, (range + 1) * ROBOTS_PER_TASK)));
       }
 
-      public int getVelocityX()
+      private interface RangeTask
       {
-         return velX;
+         void run(int from, int to);
       }
+   }
 
-      public int getVelocityY()
+   /**
+    * Metrics of one moment of the swarm. The occupancy histogram counts robots per cell, row-major. Robots on
+    * the middle row or column belong to no quadrant. The density entropy is the Shannon entropy (in bits) of
+    * the robots over square tiles of {@code DENSITY_TILE} cells, it drops when the robots bunch up.
+    */
+   static class SwarmStats
+   {
+      static final int DENSITY_TILE = 4;
+
+      final int width;
+      final int height;
+      final int[] occupancy;
+      final long[] quadrants = new long[4];
+      long robots;
+      long sumX;
+      long sumY;
+      long sumXSquares;
+      long sumYSquares;
+      int longestRowRun;
+      double densityEntropy;
+
+      SwarmStats(int width, int height)
       {
-         return velY;
+         this.width = width;
+         this.height = height;
+         occupancy = new int[width * height];
       }
 
-      public int getY()
+      void add(int px, int py)
       {
-         return y;
+         occupancy[py * width + px]++;
+         if (px != width / 2 && py != height / 2) {
+            quadrants[(px < width / 2 ? 0 : 1) + (py < height / 2 ? 0 : 2)]++;
+         }
+         robots++;
+         sumX += px;
+         sumY += py;
+         sumXSquares += (long) px * px;
+         sumYSquares += (long) py * py;
       }
 
-      public void setY(int y)
+      void combine(SwarmStats other)
       {
-         this.y = y;
+         for (int cell = 0; cell < occupancy.length; cell++) {
+            occupancy[cell] += other.occupancy[cell];
+         }
+         for (int quadrant = 0; quadrant < 4; quadrant++) {
+            quadrants[quadrant] += other.quadrants[quadrant];
+         }
+         robots += other.robots;
+         sumX += other.sumX;
+         sumY += other.sumY;
+         sumXSquares += other.sumXSquares;
+         sumYSquares += other.sumYSquares;
       }
 
-      public int getX()
+      // One pass over the histogram: the longest run of occupied cells in a row, and the tile densities
+      void finish()
       {
-         return x;
+         int tilesPerRow = (width + DENSITY_TILE - 1) / DENSITY_TILE;
+         long[] tiles = new long[tilesPerRow * ((height + DENSITY_TILE - 1) / DENSITY_TILE)];
+         longestRowRun = 0;
+         for (int row = 0; row < height; row++) {
+            int run = 0;
+            int tileRow = row / DENSITY_TILE * tilesPerRow;
+            for (int col = 0; col < width; col++) {
+               int count = occupancy[row * width + col];
+               run = count > 0 ? run + 1 : 0;
+               longestRowRun = Math.max(longestRowRun, run);
+               tiles[tileRow + col / DENSITY_TILE] += count;
+            }
+         }
+
+         densityEntropy = 0;
+         for (long tile : tiles) {
+            if (tile > 0) {
+               double share = (double) tile / robots;
+               densityEntropy -= share * Math.log(share) / Math.log(2);
+            }
+         }
       }
 
-      public void setX(int x)
+      boolean isOccupied(int px, int py)
       {
-         this.x = x;
+         return occupancy[py * width + px] > 0;
       }
 
-      public void setPosition(int x, int y)
+      long safetyFactor()
       {
-         this.x = x;
-         this.y = y;
+         return quadrants[0] * quadrants[1] * quadrants[2] * quadrants[3];
       }
 
-      @Override
-      public boolean equals(Object o)
+      double varianceX()
       {
-         if (!(o instanceof GridRobot gridRobot))
-            return false;
-         return getX() == gridRobot.getX() && getY() == gridRobot.getY();
+         double mean = (double) sumX / robots;
+         return (double) sumXSquares / robots - mean * mean;
       }
 
-      @Override
-      public int hashCode()
+      double varianceY()
       {
-         return Objects.hash(getX(), getY());
+         double mean = (double) sumY / robots;
+         return (double) sumYSquares / robots - mean * mean;
       }
    }
 }
-
@@ -0,0 +1,55 @@
+package aoc.year2024;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.StringJoiner;
+import org.junit.jupiter.api.Test;
+
+
+class Day02Test
+{
+   @Test
+   void levelsOutsideTheIntRangeAreRejected()
+   {
+      Day02.ReportCounter counter = new Day02.ReportCounter();
+      counter.accept("2147483646 2147483647");
+      counter.accept("-2147483647 -2147483648");
+      assertEquals(2, counter.safe);
+
+      // Each of these wraps around to a safe report when the parser overflows
+      counter.accept("2147483647 2147483648");
+      counter.accept("4294967297 4294967298 4294967299");
+      counter.accept("-2147483648 -2147483649");
+      assertEquals(2, counter.safe);
+      assertEquals(2, counter.safeWithRemoval);
+   }
+
+   @Test
+   void parallelRangesMatchTheSequentialCount()
+   {
+      Random random = new Random(26);
+      List<String> input = new ArrayList<>();
+      // Enough lines for several ranges, with a ragged last one
+      for (int line = 0; line < 150_000 + 123; line++) {
+         if (line % 10_000 == 0) {
+            input.add("   ");
+            continue;
+         }
+         int level = random.nextInt(100);
+         StringJoiner report = new StringJoiner(" ");
+         for (int i = 0, levels = 1 + random.nextInt(8); i < levels; i++) {
+            report.add(Integer.toString(level));
+            level += random.nextInt(9) - 4;
+         }
+         input.add(report.toString());
+      }
+
+      Day02.ReportCounter sequential = Day02.processInput(input, 0, input.size());
+      Day02.ReportCounter parallel = Day02.processInputInParallel(input);
+      assertEquals(sequential.safe, parallel.safe);
+      assertEquals(sequential.safeWithRemoval, parallel.safeWithRemoval);
+   }
+}
@@ -0,0 +1,65 @@
+package aoc.year2024;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+
+class Day03Test
+{
+   private static final String[] TOKENS = { "mul(123,45)", "mul(7,8)", "do()", "don't()", "mul(1,2", "mul(4*", "don't", "xmul(2,3)" };
+
+   @Test
+   void parallelChunksMatchTheSequentialScan()
+   {
+      Random random = new Random(28);
+      List<String> input = new ArrayList<>();
+      for (int line = 0; line < 6; line++) {
+         StringBuilder text = new StringBuilder();
+         int chunks = 2 + random.nextInt(3);
+         for (int boundary = Day03.CHUNK_SIZE; boundary < chunks * Day03.CHUNK_SIZE; boundary += Day03.CHUNK_SIZE) {
+            // Random text with a token straddling the next chunk boundary at a random offset
+            String token = TOKENS[random.nextInt(TOKENS.length)];
+            int tokenStart = boundary - 1 - random.nextInt(token.length());
+            appendNoise(text, random, tokenStart);
+            text.append(token);
+         }
+         appendNoise(text, random, text.length() + random.nextInt(Day03.CHUNK_SIZE));
+         input.add(text.toString());
+      }
+
+      Day03.MulScanner sequential = Day03.scanSequentially(input);
+      Day03.MulScanner parallel = Day03.scanInParallel(input);
+      assertNotEquals(sequential.sumIfEnabledAtStart(), sequential.sumOfMultiplications);
+      assertEquals(sequential.sumOfMultiplications, parallel.sumOfMultiplications);
+      assertEquals(sequential.sumIfEnabledAtStart(), parallel.sumIfEnabledAtStart());
+   }
+
+   @Test
+   void everyTokenOffsetAcrossOneBoundary()
+   {
+      for (String token : TOKENS) {
+         for (int offset = 0; offset <= token.length(); offset++) {
+            String line = "x".repeat(Day03.CHUNK_SIZE - offset) + token + "mul(3,3)";
+            List<String> input = List.of("don't()", line);
+            Day03.MulScanner sequential = Day03.scanSequentially(input);
+            Day03.MulScanner parallel = Day03.scanInParallel(input);
+            assertEquals(sequential.sumOfMultiplications, parallel.sumOfMultiplications, token + " at " + offset);
+            assertEquals(sequential.sumIfEnabledAtStart(), parallel.sumIfEnabledAtStart(), token + " at " + offset);
+         }
+      }
+   }
+
+   // Appends filler made of token fragments until the text reaches the given length
+   private static void appendNoise(StringBuilder text, Random random, int length)
+   {
+      while (text.length() < length) {
+         String fragment = random.nextInt(4) == 0 ? TOKENS[random.nextInt(TOKENS.length)] : "m,d()'xu9";
+         text.append(fragment, 0, Math.min(fragment.length(), length - text.length()));
+      }
+   }
+}
@@ -0,0 +1,78 @@
+package aoc.year2024;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import aoc.InputLoader;
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+
+class Day04Test
+{
+   @Test
+   void wordSearchMatchesBitboardPerWord() throws IOException
+   {
+      List<String> grid = new InputLoader().getInputForDay("inputs/year2024/Day04.txt");
+      List<String> words = List.of("XMAS", "MAS", "SAM", "AXA", "MM", "XMASX", "SAMXMAS");
+
+      long[] counts = new Day04.WordSearch(words)
+            .countOccurrences(grid.stream().map(String::toCharArray).toArray(char[][]::new));
+
+      Day04.LetterBitboard bitboard = new Day04.LetterBitboard(grid, "XMAS", false);
+      long[] expected = words.stream().mapToLong(bitboard::countWord).toArray();
+      assertArrayEquals(expected, counts);
+   }
+
+   @Test
+   void wordSearchFollowsFailLinksAcrossOverlappingWords()
+   {
+      // Words sharing prefixes and suffixes, so matches are only found through fail links,
+      // plus a repeated word and one with a letter the grid never holds
+      List<String> words = List.of("HE", "SHE", "HIS", "HERS", "SHEHE", "EHE", "E", "EEE", "RS", "HE", "HEZ");
+      Random random = new Random(29);
+      char[][] grid = new char[37][53];
+      for (char[] row : grid) {
+         for (int col = 0; col < row.length; col++) {
+            row[col] = "HESRIQ".charAt(random.nextInt(6));
+         }
+      }
+
+      long[] counts = new Day04.WordSearch(words).countOccurrences(grid);
+      for (int w = 0; w < words.size(); w++) {
+         assertEquals(countNaively(grid, words.get(w)), counts[w], words.get(w));
+      }
+   }
+
+   // Tries the word from every cell in all 8 directions
+   private static long countNaively(char[][] grid, String word)
+   {
+      long count = 0;
+      for (int row = 0; row < grid.length; row++) {
+         for (int col = 0; col < grid[0].length; col++) {
+            for (int dRow = -1; dRow <= 1; dRow++) {
+               for (int dCol = -1; dCol <= 1; dCol++) {
+                  if ((dRow != 0 || dCol != 0) && matches(grid, word, row, col, dRow, dCol)) {
+                     count++;
+                  }
+               }
+            }
+         }
+      }
+      return count;
+   }
+
+   private static boolean matches(char[][] grid, String word, int row, int col, int dRow, int dCol)
+   {
+      for (int i = 0; i < word.length(); i++) {
+         int r = row + i * dRow;
+         int c = col + i * dCol;
+         if (r < 0 || r >= grid.length || c < 0 || c >= grid[0].length || grid[r][c] != word.charAt(i)) {
+            return false;
+         }
+      }
+      return true;
+   }
+}
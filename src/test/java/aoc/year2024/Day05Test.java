@@ -0,0 +1,18 @@
+package aoc.year2024;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+
+class Day05Test
+{
+   @Test
+   void pageTooLargeForTheMatrixIsRejected()
+   {
+      // A million pages would need 10^12 bits, more than one long[] can hold
+      List<int[]> rules = List.of(new int[] { 1, 2 }, new int[] { 3, 999_999 });
+      assertThrows(IllegalArgumentException.class, () -> new Day05.PrecedenceRules(rules));
+   }
+}
@@ -0,0 +1,60 @@
+package aoc.year2024;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import aoc.InputLoader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+
+class Day10Test
+{
+   @Test
+   void incrementalEditsMatchRecomputationOnPuzzleInput() throws IOException
+   {
+      List<String> input = new InputLoader().getInputForDay("inputs/year2024/Day10.txt");
+      checkRandomEdits(input, 500, new Random(42));
+   }
+
+   @Test
+   void incrementalEditsMatchRecomputationOnRandomMaps()
+   {
+      Random random = new Random(7);
+      for (int map = 0; map < 50; map++) {
+         int rows = 1 + random.nextInt(12);
+         int cols = 1 + random.nextInt(12);
+         List<String> grid = new ArrayList<>();
+         for (int row = 0; row < rows; row++) {
+            StringBuilder line = new StringBuilder();
+            for (int col = 0; col < cols; col++) {
+               line.append(random.nextInt(8) == 0 ? '.' : (char) ('0' + random.nextInt(10)));
+            }
+            grid.add(line.toString());
+         }
+         checkRandomEdits(grid, 60, random);
+      }
+   }
+
+   // Applies random edits, -1 included, and compares both totals with a TrailMap built from scratch
+   private static void checkRandomEdits(List<String> input, int edits, Random random)
+   {
+      char[][] grid = input.stream().map(String::toCharArray).toArray(char[][]::new);
+      Day10.IncrementalTrailMap incremental = new Day10.IncrementalTrailMap(input);
+
+      for (int edit = 0; edit < edits; edit++) {
+         int row = random.nextInt(grid.length);
+         int col = random.nextInt(grid[0].length);
+         int height = random.nextInt(11) - 1;
+         incremental.setHeight(row, col, height);
+         grid[row][col] = height < 0 ? '.' : (char) ('0' + height);
+
+         Day10.TrailMap fresh = new Day10.TrailMap(Arrays.stream(grid).map(String::new).toList());
+         assertEquals(fresh.totalRating(), incremental.totalRating(), "rating after edit " + edit);
+         assertEquals(fresh.totalScore(), incremental.totalScore(), "score after edit " + edit);
+      }
+   }
+}
@@ -0,0 +1,46 @@
+package aoc.year2024;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import aoc.InputLoader;
+import java.io.IOException;
+import java.util.Arrays;
+import org.junit.jupiter.api.Test;
+
+
+class Day11Test
+{
+   private static final long PRIME = 1_000_000_007L;
+
+   @Test
+   void recurrenceMatchesGenerationsOnPuzzleInput() throws IOException
+   {
+      long[] stones = Arrays.stream(new InputLoader().getInputForDay("inputs/year2024/Day11.txt").get(0).trim().split("\\s+"))
+            .mapToLong(Long::parseLong)
+            .toArray();
+      // The puzzle input closes over a few thousand engravings, so the 2n warm-up ends well below 12345
+      assertMatchesGenerations(stones, 0, 25, 75, 8000, 12345);
+   }
+
+   @Test
+   void recurrenceMatchesGenerationsOnExample()
+   {
+      assertMatchesGenerations(new long[] { 125, 17 }, 6, 25, 1000, 5000);
+   }
+
+   @Test
+   void singleZeroStone()
+   {
+      Day11.BlinkRecurrence recurrence = new Day11.BlinkRecurrence(new long[] { 0 }, PRIME);
+      assertEquals(new Day11.BlinkEngine(PRIME).countStones(new long[] { 0 }, 3000), recurrence.countStones(3000));
+   }
+
+   private static void assertMatchesGenerations(long[] stones, int... blinks)
+   {
+      Day11.BlinkRecurrence recurrence = new Day11.BlinkRecurrence(stones, PRIME);
+      Day11.BlinkEngine engine = new Day11.BlinkEngine(PRIME);
+      for (int n : blinks) {
+         assertEquals(engine.countStones(stones, n), recurrence.countStones(n), "after " + n + " blinks");
+      }
+   }
+}
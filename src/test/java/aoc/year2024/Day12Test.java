@@ -0,0 +1,140 @@
+package aoc.year2024;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+
+class Day12Test
+{
+   private static final int[] ROW_STEP = { -1, 0, 1, 0 };
+   private static final int[] COL_STEP = { 0, 1, 0, -1 };
+
+   @Test
+   void stripsStitchLikeOneFloodFill()
+   {
+      // 1000 columns give strips of 262 rows, so regions span several strip boundaries
+      assertPricesMatchFloodFill(randomGarden(1000, 1000, new Random(46)));
+   }
+
+   @Test
+   void rowsWiderThanOneStrip()
+   {
+      // Every row is a strip of its own
+      assertPricesMatchFloodFill(randomGarden(5, 300_000, new Random(12)));
+   }
+
+   @Test
+   void ringClosedOnlyInTheLastStrip()
+   {
+      // A U of A plants whose arms only meet in the bottom row, with B plants inside and around it
+      int rows = 1200;
+      int cols = 700;
+      List<String> garden = new ArrayList<>();
+      for (int row = 0; row < rows; row++) {
+         StringBuilder line = new StringBuilder();
+         for (int col = 0; col < cols; col++) {
+            boolean arm = col == 100 || col == 600;
+            boolean base = row == rows - 1 && col >= 100 && col <= 600;
+            line.append(arm && row > 0 || base ? 'A' : 'B');
+         }
+         garden.add(line.toString());
+      }
+      assertPricesMatchFloodFill(garden);
+   }
+
+   private static void assertPricesMatchFloodFill(List<String> garden)
+   {
+      Day12.RegionTally regions = new Day12.GardenMap(garden).labelRegions();
+      long[] expected = floodFillPrices(garden);
+      assertEquals(expected[0], regions.priceWithPerimeter());
+      assertEquals(expected[1], regions.priceWithSides());
+   }
+
+   // Few plants with runs along the row, so regions are large and irregular
+   private static List<String> randomGarden(int rows, int cols, Random random)
+   {
+      List<String> garden = new ArrayList<>();
+      for (int row = 0; row < rows; row++) {
+         StringBuilder line = new StringBuilder();
+         char plant = 'A';
+         for (int col = 0; col < cols; col++) {
+            if (random.nextInt(3) == 0) {
+               plant = "ABC".charAt(random.nextInt(3));
+            }
+            line.append(plant);
+         }
+         garden.add(line.toString());
+      }
+      return garden;
+   }
+
+   /**
+    * Breadth-first search per region. A side is counted at the fence piece that starts it: the one whose
+    * neighbour along the fence, to the left or above, is not a plot of the region with the same fence.
+    */
+   private static long[] floodFillPrices(List<String> garden)
+   {
+      int rows = garden.size();
+      int cols = garden.get(0).length();
+      boolean[] seen = new boolean[rows * cols];
+      int[] queue = new int[rows * cols];
+      long priceWithPerimeter = 0;
+      long priceWithSides = 0;
+
+      for (int start = 0; start < rows * cols; start++) {
+         if (seen[start]) {
+            continue;
+         }
+         char plant = plantAt(garden, start / cols, start % cols);
+         long area = 0;
+         long perimeter = 0;
+         long sides = 0;
+         int head = 0;
+         int tail = 0;
+         queue[tail++] = start;
+         seen[start] = true;
+         while (head < tail) {
+            int cell = queue[head++];
+            int row = cell / cols;
+            int col = cell % cols;
+            area++;
+            for (int direction = 0; direction < 4; direction++) {
+               int nextRow = row + ROW_STEP[direction];
+               int nextCol = col + COL_STEP[direction];
+               if (plantAt(garden, nextRow, nextCol) == plant) {
+                  int next = nextRow * cols + nextCol;
+                  if (!seen[next]) {
+                     seen[next] = true;
+                     queue[tail++] = next;
+                  }
+                  continue;
+               }
+               perimeter++;
+               // Fences facing up or down run along the row, the others along the column
+               int alongRow = row - COL_STEP[direction] * COL_STEP[direction];
+               int alongCol = col - ROW_STEP[direction] * ROW_STEP[direction];
+               boolean continued = plantAt(garden, alongRow, alongCol) == plant
+                     && plantAt(garden, alongRow + ROW_STEP[direction], alongCol + COL_STEP[direction]) != plant;
+               if (!continued) {
+                  sides++;
+               }
+            }
+         }
+         priceWithPerimeter += area * perimeter;
+         priceWithSides += area * sides;
+      }
+      return new long[] { priceWithPerimeter, priceWithSides };
+   }
+
+   private static char plantAt(List<String> garden, int row, int col)
+   {
+      if (row < 0 || row >= garden.size() || col < 0 || col >= garden.get(row).length()) {
+         return 0;
+      }
+      return garden.get(row).charAt(col);
+   }
+}
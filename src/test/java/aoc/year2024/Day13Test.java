@@ -0,0 +1,109 @@
+package aoc.year2024;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+
+class Day13Test
+{
+   @Test
+   void generalSolverMatchesCramerOnTwoButtonMachines()
+   {
+      Random random = new Random(13);
+      Day13.EliminationCache cache = new Day13.EliminationCache();
+      for (int machine = 0; machine < 20_000; machine++) {
+         Day13.Equation equation = new Day13.Equation(1 + random.nextInt(99), 1 + random.nextInt(99), random.nextInt(20_000),
+               1 + random.nextInt(99), 1 + random.nextInt(99), random.nextInt(20_000));
+         if (random.nextBoolean()) {
+            // Make sure plenty of machines are winnable
+            long a = random.nextInt(100);
+            long b = random.nextInt(100);
+            equation = new Day13.Equation(equation.xa, equation.xb, a * equation.xa + b * equation.xb,
+                  equation.ya, equation.yb, a * equation.ya + b * equation.yb);
+         }
+         if (random.nextBoolean()) {
+            equation = equation.calibratePrizes(10000000000000L);
+         }
+         if ((long) equation.xa * equation.yb == (long) equation.xb * equation.ya) {
+            continue;
+         }
+
+         long expected = Day13.tokensToWin(equation.xa, equation.xb, equation.ya, equation.yb, equation.xPrize, equation.yPrize);
+         assertEquals(expected, cache.minimumTokens(equation.buttonLayout(), equation.prize()), "machine " + machine);
+      }
+   }
+
+   @Test
+   void generalSolverMatchesBruteForceOnSmallLayouts()
+   {
+      Random random = new Random(48);
+      Day13.EliminationCache cache = new Day13.EliminationCache();
+      for (int machine = 0; machine < 3000; machine++) {
+         int buttons = 1 + random.nextInt(4);
+         int axes = 1 + random.nextInt(3);
+         int[][] moves = new int[buttons][axes];
+         long[] costs = new long[buttons];
+         for (int button = 0; button < buttons; button++) {
+            for (int axis = 0; axis < axes; axis++) {
+               moves[button][axis] = random.nextInt(3) == 0 ? 0 : random.nextInt(6);
+            }
+            if (Arrays.stream(moves[button]).allMatch(move -> move == 0)) {
+               moves[button][random.nextInt(axes)] = 1 + random.nextInt(5);
+            }
+            costs[button] = random.nextInt(5);
+         }
+         if (buttons > 1 && random.nextInt(4) == 0) {
+            moves[buttons - 1] = moves[0].clone(); // A repeated button leaves a free one
+         }
+
+         long[] prize = new long[axes];
+         for (int button = 0; button < buttons; button++) {
+            long presses = random.nextInt(6);
+            for (int axis = 0; axis < axes; axis++) {
+               prize[axis] += presses * moves[button][axis];
+            }
+         }
+         if (random.nextInt(4) == 0) {
+            prize[random.nextInt(axes)] += random.nextInt(3);
+         }
+
+         long expected = bruteForce(moves, costs, 0, prize.clone(), 0);
+         assertEquals(expected, cache.minimumTokens(new Day13.ButtonLayout(moves, costs), prize),
+               Arrays.deepToString(moves) + " " + Arrays.toString(costs) + " " + Arrays.toString(prize));
+      }
+   }
+
+   @Test
+   void parallelButtonsWithCalibratedPrize()
+   {
+      // 2a + 3b = 10000000000001 on both axes: b is cheaper, a = 1 is the fewest A presses that leave a multiple of 3
+      Day13.Equation equation = new Day13.Equation(2, 3, 1, 2, 3, 1).calibratePrizes(10000000000000L);
+      long expected = 3 + 3333333333333L;
+
+      assertEquals(expected, new Day13.EliminationCache().minimumTokens(equation.buttonLayout(), equation.prize()));
+      assertEquals(expected, Day13.ClawMachines.of(List.of(equation)).totalTokens());
+   }
+
+   // Cheapest way to cover the prize exactly, trying every press count of every button
+   private static long bruteForce(int[][] moves, long[] costs, int button, long[] remaining, long cost)
+   {
+      if (button == moves.length) {
+         return Arrays.stream(remaining).allMatch(left -> left == 0) ? cost : Day13.NO_PRIZE;
+      }
+      long best = Day13.NO_PRIZE;
+      for (long presses = 0; Arrays.stream(remaining).allMatch(left -> left >= 0); presses++) {
+         long tokens = bruteForce(moves, costs, button + 1, remaining.clone(), cost + presses * costs[button]);
+         if (tokens != Day13.NO_PRIZE && (best == Day13.NO_PRIZE || tokens < best)) {
+            best = tokens;
+         }
+         for (int axis = 0; axis < remaining.length; axis++) {
+            remaining[axis] -= moves[button][axis];
+         }
+      }
+      return best;
+   }
+}
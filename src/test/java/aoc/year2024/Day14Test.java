@@ -0,0 +1,79 @@
+package aoc.year2024;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+
+class Day14Test
+{
+   private static final int WIDTH = 101;
+   private static final int HEIGHT = 103;
+
+   @Test
+   void treeSearchFindsTheSecondTheSwarmGathers()
+   {
+      for (int gathering : new int[] { 1, 57, 4321, 7858, WIDTH * HEIGHT - 1 }) {
+         assertEquals(gathering, Day14.findChristmasTree(gatheringSwarm(gathering, new Random(gathering))));
+      }
+   }
+
+   @Test
+   void swarmGatheredAtTheStartComesBackAfterOneFullCycle()
+   {
+      assertEquals(WIDTH * HEIGHT, Day14.findChristmasTree(gatheringSwarm(0, new Random(49))));
+   }
+
+   @Test
+   void densityEntropyOfSmallSwarm()
+   {
+      // Tiles of 2, 1 and 1 robots out of 4: -(1/2 log 1/2 + 2 * 1/4 log 1/4) = 1.5 bits
+      Day14.RobotSwarm swarm = new Day14.RobotSwarm(WIDTH, HEIGHT);
+      swarm.add(0, 0, 0, 0);
+      swarm.add(3, 3, 0, 0);
+      swarm.add(4, 0, 0, 0);
+      swarm.add(100, 102, 0, 0);
+      Day14.SwarmStats stats = swarm.stats();
+      assertEquals(1.5, stats.densityEntropy, 1e-12);
+      assertEquals(1, stats.longestRowRun);
+
+      // Every robot in one tile
+      Day14.RobotSwarm bunched = new Day14.RobotSwarm(WIDTH, HEIGHT);
+      for (int robot = 0; robot < 16; robot++) {
+         bunched.add(8 + robot % 4, 12 + robot / 4, 0, 0);
+      }
+      assertEquals(0, bunched.stats().densityEntropy, 1e-12);
+      assertEquals(4, bunched.stats().longestRowRun);
+   }
+
+   @Test
+   void fusedStatsOfSwarmTalliedInParallelRanges()
+   {
+      // 7 robots on every cell of a 100x100 area: more robots than one range holds, evenly spread over the
+      // 625 tiles, column and row 50 being left out of the quadrants
+      Day14.RobotSwarm swarm = new Day14.RobotSwarm(100, 100);
+      for (int robot = 0; robot < 70_000; robot++) {
+         int cell = robot % 10_000;
+         swarm.add(cell % 100, cell / 100, 0, 0);
+      }
+      Day14.SwarmStats stats = swarm.stats();
+      assertEquals(Math.log(625) / Math.log(2), stats.densityEntropy, 1e-9);
+      assertEquals(100, stats.longestRowRun);
+      assertEquals(7L * 50 * 50 * 7 * 49 * 50 * 7 * 50 * 49 * 7 * 49 * 49, stats.safetyFactor());
+   }
+
+   // Random robots that all stand within a 5x5 block at the given second
+   private static Day14.RobotSwarm gatheringSwarm(int gathering, Random random)
+   {
+      Day14.RobotSwarm swarm = new Day14.RobotSwarm(WIDTH, HEIGHT);
+      for (int robot = 0; robot < 500; robot++) {
+         int velocityX = random.nextInt(2 * WIDTH) - WIDTH;
+         int velocityY = random.nextInt(2 * HEIGHT) - HEIGHT;
+         int x = 40 + random.nextInt(5) - (int) ((long) velocityX * gathering % WIDTH);
+         int y = 60 + random.nextInt(5) - (int) ((long) velocityY * gathering % HEIGHT);
+         swarm.add(x, y, velocityX, velocityY);
+      }
+      return swarm;
+   }
+}